@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.gzsombor.testcasegen.TestcaseGenerator;
+import io.github.gzsombor.testcasegen.TestcaseGeneratorConfig;
+
+/**
+ * Measures walking and introspecting the object graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptureBenchmark {
+
+    @Param({ "WIDE", "DEEP", "CYCLIC", "COLLECTION_HEAVY", "PROXY_HEAVY" })
+    public GraphShape shape;
+
+    @Param({ "1000" })
+    public int size;
+
+    /**
+     * Reads the properties through the accessors generated by the testcasegen-processor, or through reflection.
+     */
+    @Param({ "true", "false" })
+    public boolean generatedAccessors;
+
+    private Node root;
+    private TestcaseGeneratorConfig config;
+
+    @Setup
+    public void setup() {
+        root = shape.build(size);
+        config = new TestcaseGeneratorConfig();
+        config.setUseGeneratedAccessors(generatedAccessors);
+    }
+
+    @Benchmark
+    public TestcaseGenerator capture() {
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(root);
+        return generator;
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.benchmarks;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.gzsombor.testcasegen.TestcaseGenerator;
+import io.github.gzsombor.testcasegen.TestcaseGeneratorConfig;
+import io.github.gzsombor.testcasegen.TestcaseSourceFormatter;
+
+/**
+ * Measures writing the source code of an already captured graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmissionBenchmark {
+
+    @Param({ "WIDE", "DEEP", "CYCLIC", "COLLECTION_HEAVY", "PROXY_HEAVY" })
+    public GraphShape shape;
+
+    @Param({ "1000" })
+    public int size;
+
+    private TestcaseGenerator generator;
+
+    @Setup
+    public void setup() {
+        generator = new TestcaseGeneratorConfig().startIntrospect();
+        generator.introspect(shape.build(size));
+    }
+
+    @Benchmark
+    public long emit() {
+        final CountingWriter counter = new CountingWriter();
+        new TestcaseSourceFormatter(generator, new PrintWriter(counter)).write("Fixture");
+        return counter.count;
+    }
+
+    /**
+     * Discards the output, so only the code generation is measured.
+     */
+    static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The shapes of the synthetic object graphs, each with roughly the given number of nodes.
+ */
+public enum GraphShape {
+
+    /**
+     * One root with all the other nodes as its direct children.
+     */
+    WIDE {
+        @Override
+        Node build(int size) {
+            final Node root = node(0);
+            for (int i = 1; i < size; i++) {
+                final Node child = node(i);
+                child.setParent(root);
+                root.getChildren().add(child);
+            }
+            return root;
+        }
+    },
+    /**
+     * A single chain of nodes.
+     */
+    DEEP {
+        @Override
+        Node build(int size) {
+            final Node root = node(0);
+            Node last = root;
+            for (int i = 1; i < size; i++) {
+                final Node next = node(i);
+                last.setNext(next);
+                last = next;
+            }
+            return root;
+        }
+    },
+    /**
+     * A ring of nodes, each pointing back to the root as parent.
+     */
+    CYCLIC {
+        @Override
+        Node build(int size) {
+            final Node root = DEEP.build(size);
+            Node last = root;
+            while (last.getNext() != null) {
+                last.setParent(root);
+                last = last.getNext();
+            }
+            last.setNext(root);
+            return root;
+        }
+    },
+    /**
+     * A shallow tree where every node carries collections of simple values.
+     */
+    COLLECTION_HEAVY {
+        @Override
+        Node build(int size) {
+            final Node root = WIDE.build(size / 10 + 1);
+            for (Node child : root.getChildren()) {
+                for (int i = 0; i < 20; i++) {
+                    child.getScores().add(i);
+                    child.getTags().add("tag" + i);
+                }
+            }
+            return root;
+        }
+    },
+    /**
+     * Like {@link #WIDE}, but the children are proxy subclasses.
+     */
+    PROXY_HEAVY {
+        @Override
+        Node build(int size) {
+            final Node root = node(0);
+            for (int i = 1; i < size; i++) {
+                final Node child = fill(new Node_$$_proxy(), i);
+                child.setParent(root);
+                root.getChildren().add(child);
+            }
+            return root;
+        }
+    };
+
+    abstract Node build(int size);
+
+    static Node node(int index) {
+        return fill(new Node(), index);
+    }
+
+    static Node fill(Node node, int index) {
+        node.setName("node" + index);
+        node.setWeight(index * 7L);
+        node.setEnabled(index % 2 == 0);
+        node.setAmount(BigDecimal.valueOf(index, 2));
+        node.setCreated(LocalDate.of(2018, 1, 1).plusDays(index % 365));
+        node.setStatus(index % 3 == 0 ? Node.Status.CLOSED : Node.Status.ACTIVE);
+        return node;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import io.github.gzsombor.testcasegen.BatchGenerator;
+import io.github.gzsombor.testcasegen.TestcaseGeneratorConfig;
+
+/**
+ * Generates the fixture classes from the captured snapshots and serialized objects of a directory, and adds them to
+ * the test sources. The unchanged captures are skipped, see {@link BatchGenerator}.
+ */
+@Mojo(name = "generate-fixtures", defaultPhase = LifecyclePhase.GENERATE_TEST_SOURCES, threadSafe = true,
+        requiresDependencyResolution = ResolutionScope.TEST)
+public class GenerateFixturesMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project.basedir}/src/test/captures", property = "testcasegen.inputDirectory")
+    private File inputDirectory;
+
+    @Parameter(defaultValue = "${project.build.directory}/generated-test-sources/testcasegen",
+            property = "testcasegen.outputDirectory")
+    private File outputDirectory;
+
+    /**
+     * The directory of the fingerprints, which keep the getter names of the regenerated fixtures stable. Defaults to
+     * the input directory, so they survive a clean build.
+     */
+    @Parameter(property = "testcasegen.fingerprintDirectory")
+    private File fingerprintDirectory;
+
+    /**
+     * The package of the generated fixtures.
+     */
+    @Parameter(defaultValue = "", property = "testcasegen.packageName")
+    private String packageName;
+
+    /**
+     * The classes which can be deserialized from the {@code .ser} captures, besides the value classes of the JDK: class
+     * names, {@code com.example.*} for the classes of a package, or {@code com.example.**} for the subpackages too.
+     * Defaults to the packages under the group id of the project.
+     */
+    @Parameter(property = "testcasegen.allowedClasses")
+    private List<String> allowedClasses;
+
+    /**
+     * The number of fixtures generated at the same time, defaults to the number of processors.
+     */
+    @Parameter(property = "testcasegen.threads")
+    private Integer threads;
+
+    @Parameter(defaultValue = "false", property = "testcasegen.skip")
+    private boolean skip;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping the fixture generation");
+            return;
+        }
+        if (!inputDirectory.isDirectory()) {
+            getLog().info("No captures in " + inputDirectory);
+            return;
+        }
+        final BatchGenerator batch = new BatchGenerator(new TestcaseGeneratorConfig(), inputDirectory.toPath(), outputDirectory.toPath());
+        if (threads != null) {
+            batch.setThreads(threads);
+        }
+        if (fingerprintDirectory != null) {
+            batch.setFingerprintDirectory(fingerprintDirectory.toPath());
+        }
+        if (packageName != null) {
+            batch.setPackageName(packageName);
+        }
+        if (allowedClasses != null && !allowedClasses.isEmpty()) {
+            batch.setAllowedClasses(allowedClasses.toArray(new String[0]));
+        } else {
+            batch.setAllowedClasses(project.getGroupId() + ".**");
+        }
+        final BatchGenerator.Result result;
+        try (URLClassLoader classLoader = createProjectClassLoader()) {
+            batch.setClassLoader(classLoader);
+            result = batch.run();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to generate the fixtures into " + outputDirectory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        }
+        project.addTestCompileSourceRoot(outputDirectory.getAbsolutePath());
+        for (Map.Entry<String, Throwable> failure : result.getFailed().entrySet()) {
+            getLog().error(failure.getKey() + ": " + failure.getValue(), failure.getValue());
+        }
+        getLog().info("Fixtures: " + result);
+        if (!result.getFailed().isEmpty()) {
+            throw new MojoFailureException(result.getFailed().size() + " fixtures could not be generated");
+        }
+    }
+
+    /**
+     * The serialized objects are instances of the project's classes.
+     */
+    private URLClassLoader createProjectClassLoader() throws MojoExecutionException {
+        try {
+            final List<String> elements = project.getTestClasspathElements();
+            final URL[] urls = new URL[elements.size()];
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = new File(elements.get(i)).toURI().toURL();
+            }
+            return new URLClassLoader(urls, getClass().getClassLoader());
+        } catch (DependencyResolutionRequiredException | MalformedURLException e) {
+            throw new MojoExecutionException("Unable to resolve the test class path", e);
+        }
+    }
+}
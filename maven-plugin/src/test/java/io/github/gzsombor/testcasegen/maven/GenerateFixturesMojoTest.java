@@ -0,0 +1,126 @@
+package io.github.gzsombor.testcasegen.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import junit.framework.TestCase;
+
+public class GenerateFixturesMojoTest extends TestCase {
+
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private Path directory;
+    private Path captures;
+    private Path fixtures;
+    private MavenProject project;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("testcasegen");
+        captures = Files.createDirectory(directory.resolve("captures"));
+        fixtures = directory.resolve("fixtures");
+        project = new MavenProject();
+        project.getBuild().setOutputDirectory(directory.resolve("classes").toString());
+        project.getBuild().setTestOutputDirectory(directory.resolve("test-classes").toString());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void capture(String fileName, String name) throws IOException {
+        final Item item = new Item();
+        item.setName(name);
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(captures.resolve(fileName)))) {
+            out.writeObject(item);
+        }
+    }
+
+    private GenerateFixturesMojo createMojo() throws ReflectiveOperationException {
+        final GenerateFixturesMojo mojo = new GenerateFixturesMojo();
+        set(mojo, "inputDirectory", captures.toFile());
+        set(mojo, "outputDirectory", fixtures.toFile());
+        set(mojo, "threads", 1);
+        set(mojo, "packageName", "com.example.fixtures");
+        set(mojo, "allowedClasses", Collections.singletonList(Item.class.getName()));
+        set(mojo, "project", project);
+        return mojo;
+    }
+
+    private static void set(GenerateFixturesMojo mojo, String name, Object value) throws ReflectiveOperationException {
+        final Field field = GenerateFixturesMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    public void testGeneratesTheFixturesIntoATestSourceRoot() throws Exception {
+        capture("order-42.ser", "first");
+        createMojo().execute();
+        final File fixture = fixtures.resolve("com/example/fixtures/Order42Fixture.java").toFile();
+        assertTrue(fixture.isFile());
+        final String code = new String(Files.readAllBytes(fixture.toPath()), "UTF-8");
+        assertTrue(code, code.contains("\"first\""));
+        assertTrue(code, code.contains("import " + Item.class.getCanonicalName() + ";"));
+        assertEquals(Collections.singletonList(fixtures.toFile().getAbsolutePath()), project.getTestCompileSourceRoots());
+    }
+
+    public void testFailsOnTheCapturesWhichCanNotBeGenerated() throws Exception {
+        capture("order-42.ser", "first");
+        capture("order_42.ser", "second");
+        try {
+            createMojo().execute();
+            fail("The captures of the same class are generated");
+        } catch (MojoFailureException e) {
+            assertEquals("2 fixtures could not be generated", e.getMessage());
+        }
+    }
+
+    public void testAllowsTheClassesOfTheProjectGroupByDefault() throws Exception {
+        capture("order-42.ser", "first");
+        final GenerateFixturesMojo mojo = createMojo();
+        set(mojo, "allowedClasses", null);
+        project.setGroupId("com.example");
+        try {
+            mojo.execute();
+            fail("A class outside of the project group is deserialized");
+        } catch (MojoFailureException e) {
+            assertEquals("1 fixtures could not be generated", e.getMessage());
+        }
+        project.setGroupId("io.github.gzsombor");
+        mojo.execute();
+        assertTrue(Files.exists(fixtures.resolve("com/example/fixtures/Order42Fixture.java")));
+    }
+
+    public void testSkipsAMissingInputDirectory() throws Exception {
+        Files.delete(captures);
+        createMojo().execute();
+        assertFalse(Files.exists(fixtures));
+        assertTrue(project.getTestCompileSourceRoots().isEmpty());
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@code GeneratedAccessors} implementation for the types annotated with {@code GenerateAccessors}, or
+ * listed in the annotation. The generated class lives in the package of the bean, calls the getters directly, and is
+ * registered in {@code META-INF/services}, so the testcasegen configuration finds it without reflection.
+ *
+ * The properties are selected with the same rules as the runtime introspection: public getters with a matching
+ * setter, or returning a collection.
+ */
+public class AccessorsProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "io.github.gzsombor.testcasegen.GenerateAccessors";
+    static final String SERVICE = "io.github.gzsombor.testcasegen.GeneratedAccessors";
+    static final String SUFFIX = "_Accessors";
+
+    private final Set<String> processedTypes = new HashSet<>();
+    private final Set<String> generatedClasses = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element annotated : roundEnv.getElementsAnnotatedWith(annotation)) {
+                for (TypeElement type : getRequestedTypes(annotated)) {
+                    generate(type, annotated);
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<TypeElement> getRequestedTypes(Element annotated) {
+        final List<TypeElement> types = new ArrayList<>();
+        for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if (!ANNOTATION.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    @SuppressWarnings("unchecked")
+                    final List<? extends AnnotationValue> classes = (List<? extends AnnotationValue>) entry.getValue().getValue();
+                    for (AnnotationValue value : classes) {
+                        types.add((TypeElement) ((DeclaredType) value.getValue()).asElement());
+                    }
+                }
+            }
+        }
+        if (types.isEmpty() && annotated instanceof TypeElement) {
+            types.add((TypeElement) annotated);
+        }
+        return types;
+    }
+
+    private void generate(TypeElement type, Element origin) {
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        if (!processedTypes.add(binaryName)) {
+            return;
+        }
+        if (!isAccessible(type)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Accessors can't be generated for " + type.getQualifiedName() + ", it is not visible from its package", origin);
+            return;
+        }
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        final String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_')
+                + SUFFIX;
+        final String qualifiedName = packageName.isEmpty() ? simpleName : packageName + '.' + simpleName;
+        try (Writer out = processingEnv.getFiler().createSourceFile(qualifiedName, type, origin).openWriter()) {
+            writeAccessors(packageName, simpleName, type, findProperties(type), out);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + qualifiedName + ": " + e, origin);
+            return;
+        }
+        generatedClasses.add(qualifiedName);
+    }
+
+    private static boolean isAccessible(TypeElement type) {
+        Element element = type;
+        while (element instanceof TypeElement) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    /**
+     * @return the getter for each property name, sorted by name.
+     */
+    private Map<String, ExecutableElement> findProperties(TypeElement type) {
+        final List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.PUBLIC)) {
+                methods.add(method);
+            }
+        }
+        final Map<String, List<TypeMirror>> setters = new HashMap<>();
+        for (ExecutableElement method : methods) {
+            final String name = method.getSimpleName().toString();
+            if (method.getParameters().size() == 1 && name.startsWith("set")) {
+                setters.computeIfAbsent(name.substring(3), key -> new ArrayList<>()).add(erasure(method.getParameters().get(0).asType()));
+            }
+        }
+        final TypeMirror collection = erasure(processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+        final Map<String, ExecutableElement> properties = new TreeMap<>();
+        for (ExecutableElement method : methods) {
+            final TypeMirror returnType = erasure(method.getReturnType());
+            if (!method.getParameters().isEmpty() || returnType.getKind() == TypeKind.VOID) {
+                continue;
+            }
+            final String propertyName = getPropertyName(method.getSimpleName().toString(), returnType);
+            if (propertyName == null) {
+                continue;
+            }
+            if (hasSetter(setters.get(propertyName), returnType) || processingEnv.getTypeUtils().isAssignable(returnType, collection)) {
+                properties.put(propertyName, method);
+            }
+        }
+        return properties;
+    }
+
+    private boolean hasSetter(List<TypeMirror> setterTypes, TypeMirror returnType) {
+        if (setterTypes != null) {
+            for (TypeMirror setterType : setterTypes) {
+                if (processingEnv.getTypeUtils().isSameType(setterType, returnType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String getPropertyName(String name, TypeMirror returnType) {
+        if (name.startsWith("get")) {
+            return isType(returnType, "java.lang.Class") ? null : name.substring(3);
+        } else if (name.startsWith("is")) {
+            return (returnType.getKind() == TypeKind.BOOLEAN || isType(returnType, "java.lang.Boolean")) ? name.substring(2) : null;
+        }
+        return null;
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(name);
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    private static void writeAccessors(String packageName, String simpleName, TypeElement type, Map<String, ExecutableElement> properties,
+            Writer out) throws IOException {
+        final String beanType = type.getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            out.write("package " + packageName + ";\n\n");
+        }
+        out.write("import io.github.gzsombor.testcasegen.GeneratedAccessors;\n");
+        out.write("import io.github.gzsombor.testcasegen.PropertyAccessor;\n");
+        out.write("import io.github.gzsombor.testcasegen.ReflectionException;\n\n");
+        out.write("/**\n * Generated by the testcasegen-processor from {@link " + beanType + "}, do not edit.\n */\n");
+        out.write("@SuppressWarnings(\"rawtypes\")\n");
+        out.write("public final class " + simpleName + " implements GeneratedAccessors {\n\n");
+        out.write("    private static final String[] PROPERTY_NAMES = {");
+        boolean first = true;
+        for (String name : properties.keySet()) {
+            out.write(first ? " \"" : ", \"");
+            out.write(name);
+            out.write('"');
+            first = false;
+        }
+        out.write(" };\n\n");
+        out.write("    @Override\n    public Class<?> getType() {\n        return " + beanType + ".class;\n    }\n\n");
+        out.write("    @Override\n    public String[] getPropertyNames() {\n        return PROPERTY_NAMES.clone();\n    }\n\n");
+        out.write("    @Override\n    public PropertyAccessor getAccessor(int index) {\n        switch (index) {\n");
+        int index = 0;
+        for (ExecutableElement getter : properties.values()) {
+            out.write("        case " + index++ + ":\n");
+            out.write("            return bean -> {\n");
+            out.write("                try {\n");
+            out.write("                    return ((" + beanType + ") bean)." + getter.getSimpleName() + "();\n");
+            out.write("                } catch (Exception e) {\n");
+            out.write("                    throw new ReflectionException(e);\n");
+            out.write("                }\n");
+            out.write("            };\n");
+        }
+        out.write("        default:\n            throw new IndexOutOfBoundsException(\"No property at index \" + index);\n        }\n    }\n");
+        out.write("}\n");
+    }
+
+    /**
+     * Registers the generated classes as services, keeping the ones registered by a previous, incremental
+     * compilation.
+     */
+    private void writeServiceFile() {
+        if (generatedClasses.isEmpty()) {
+            return;
+        }
+        final String resource = "META-INF/services/" + SERVICE;
+        final Set<String> services = new TreeSet<>();
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        services.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no services from a previous compilation
+        }
+        services.addAll(generatedClasses);
+        try (Writer out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resource).openWriter()) {
+            for (String service : services) {
+                out.write(service);
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + resource + ": " + e);
+        }
+    }
+
+}
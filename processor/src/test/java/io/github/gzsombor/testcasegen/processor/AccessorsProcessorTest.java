@@ -0,0 +1,182 @@
+package io.github.gzsombor.testcasegen.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import io.github.gzsombor.testcasegen.GeneratedAccessors;
+import junit.framework.TestCase;
+
+public class AccessorsProcessorTest extends TestCase {
+
+    private static final String SERVICE_FILE = "META-INF/services/" + AccessorsProcessor.SERVICE;
+
+    private static final String ORDER = "package com.example;\n"
+            + "\n"
+            + "import java.util.ArrayList;\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "@io.github.gzsombor.testcasegen.GenerateAccessors\n"
+            + "public class Order {\n"
+            + "    private String name = \"order\";\n"
+            + "    private boolean paid = true;\n"
+            + "    private List<String> lines = new ArrayList<>();\n"
+            + "    public String getName() { return name; }\n"
+            + "    public void setName(String name) { this.name = name; }\n"
+            + "    public boolean isPaid() { return paid; }\n"
+            + "    public void setPaid(boolean paid) { this.paid = paid; }\n"
+            + "    public List<String> getLines() { return lines; }\n"
+            + "    public String getReadOnly() { return \"read only\"; }\n"
+            + "    public static class Line {\n"
+            + "        private int quantity = 3;\n"
+            + "        public int getQuantity() { return quantity; }\n"
+            + "        public void setQuantity(int quantity) { this.quantity = quantity; }\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String CONFIGURATION = "package com.example.config;\n"
+            + "\n"
+            + "@io.github.gzsombor.testcasegen.GenerateAccessors({ com.example.Order.Line.class })\n"
+            + "public class AccessorsConfiguration {\n"
+            + "}\n";
+
+    private Path directory;
+    private Path classes;
+    private Path sources;
+    private String messages;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("testcasegen");
+        classes = Files.createDirectory(directory.resolve("classes"));
+        sources = Files.createDirectory(directory.resolve("generated"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Compiles the sources with the processor, and returns true if the compilation succeeded.
+     */
+    private boolean compile(String... sourceTexts) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (String source : sourceTexts) {
+            final String packageName = source.substring("package ".length(), source.indexOf(';'));
+            final int classStart = source.indexOf("public class ") + "public class ".length();
+            final String className = source.substring(classStart, source.indexOf(' ', classStart));
+            final Path file = Files.createDirectories(directory.resolve("src").resolve(packageName.replace('.', '/')))
+                    .resolve(className + ".java");
+            Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            final Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(toFiles(files));
+            final JavaCompiler.CompilationTask task = compiler.getTask(new OutputStreamWriter(output, StandardCharsets.UTF_8), fileManager,
+                    null, Arrays.asList("-cp", System.getProperty("java.class.path"), "-d", classes.toString(), "-s", sources.toString()),
+                    null, units);
+            task.setProcessors(Collections.singletonList(new AccessorsProcessor()));
+            final boolean success = task.call();
+            messages = new String(output.toByteArray(), StandardCharsets.UTF_8);
+            return success;
+        }
+    }
+
+    private static List<File> toFiles(List<Path> paths) {
+        final List<File> files = new ArrayList<>();
+        for (Path path : paths) {
+            files.add(path.toFile());
+        }
+        return files;
+    }
+
+    private String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    public void testGeneratesTheAccessorsAndTheServiceFile() throws Exception {
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            return;
+        }
+        final boolean compiled = compile(ORDER, CONFIGURATION);
+        assertTrue(messages, compiled);
+
+        final String code = read(sources.resolve("com/example/Order_Accessors.java"));
+        assertTrue(code, code.startsWith("package com.example;\n"));
+        assertTrue(code, code.contains("public final class Order_Accessors implements GeneratedAccessors {"));
+        // the read only property has no setter, it is not captured
+        assertTrue(code, code.contains("PROPERTY_NAMES = { \"Lines\", \"Name\", \"Paid\" };"));
+        assertTrue(code, code.contains("return ((com.example.Order) bean).isPaid();"));
+        assertTrue(read(sources.resolve("com/example/Order_Line_Accessors.java")).contains("PROPERTY_NAMES = { \"Quantity\" };"));
+        assertFalse(Files.exists(sources.resolve("com/example/config/AccessorsConfiguration_Accessors.java")));
+
+        assertEquals(Arrays.asList("com.example.Order_Accessors", "com.example.Order_Line_Accessors"),
+                Files.readAllLines(classes.resolve(SERVICE_FILE), StandardCharsets.UTF_8));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { classes.toUri().toURL() }, getClass().getClassLoader())) {
+            final Object order = loader.loadClass("com.example.Order").getConstructor().newInstance();
+            final GeneratedAccessors accessors = (GeneratedAccessors) loader.loadClass("com.example.Order_Accessors").getConstructor()
+                    .newInstance();
+            assertSame(order.getClass(), accessors.getType());
+            assertEquals(Arrays.asList("Lines", "Name", "Paid"), Arrays.asList(accessors.getPropertyNames()));
+            assertEquals(Collections.emptyList(), accessors.getAccessor(0).read(order));
+            assertEquals("order", accessors.getAccessor(1).read(order));
+            assertEquals(Boolean.TRUE, accessors.getAccessor(2).read(order));
+            try {
+                accessors.getAccessor(3);
+                fail("An accessor beyond the properties is returned");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testKeepsTheServicesOfAnEarlierCompilation() throws Exception {
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            return;
+        }
+        final Path serviceFile = Files.createDirectories(classes.resolve("META-INF/services")).resolve(AccessorsProcessor.SERVICE);
+        Files.write(serviceFile, Arrays.asList("com.example.Customer_Accessors"), StandardCharsets.UTF_8);
+        final boolean compiled = compile(ORDER);
+        assertTrue(messages, compiled);
+        assertEquals(Arrays.asList("com.example.Customer_Accessors", "com.example.Order_Accessors"),
+                Files.readAllLines(serviceFile, StandardCharsets.UTF_8));
+    }
+
+    public void testRejectsAPrivateType() throws Exception {
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            return;
+        }
+        assertFalse(compile("package com.example;\n"
+                + "\n"
+                + "public class Outer {\n"
+                + "    @io.github.gzsombor.testcasegen.GenerateAccessors\n"
+                + "    private static class Hidden {\n"
+                + "    }\n"
+                + "}\n"));
+        assertTrue(messages, messages.contains("Accessors can't be generated for com.example.Outer.Hidden, it is not visible from its package"));
+        assertFalse(Files.exists(classes.resolve(SERVICE_FILE)));
+    }
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates a fixture class for each capture in a directory, on a bounded thread pool. The captures are either
+ * snapshots written by the {@link SnapshotWriter} ({@code .snapshot}), or Java serialized root objects ({@code .ser},
+ * a single object or an {@code Object[]} of roots). The fixture of {@code order-42.snapshot} is written to
+ * {@code Order42Fixture.java}, in the {@link #setPackageName(String) package} of the fixtures, with the imports of the
+ * captured classes. The captures whose names give the same class name, like {@code order-42.ser} and
+ * {@code order_42.snapshot}, are not generated, they are reported as failures.
+ *
+ * Only the classes of the {@link #setAllowedClasses(String...) allowed packages} are deserialized from the
+ * {@code .ser} files, so a capture file can't instantiate arbitrary classes of the class path.
+ *
+ * The hash of every input is kept in an index file in the output directory, and the fixtures whose input is not
+ * changed since the last run are not generated again. The fixtures and the fingerprints of the deleted captures are
+ * removed. Delete the index file to regenerate everything, for example after changing the configuration.
+ *
+ * The {@link FixtureFingerprints} of every fixture are kept next to the captures, in {@code .<ClassName>.fingerprints},
+ * so a fixture which is generated again keeps the getter names of the objects which are still in the capture, and only
+ * the getters of the changed objects differ - even after the output directory is deleted by a clean build. Commit
+ * them with the captures.
+ */
+public class BatchGenerator {
+
+    static final String INDEX_FILE = ".testcasegen-index";
+    static final String SNAPSHOT_EXTENSION = ".snapshot";
+    static final String SERIALIZED_EXTENSION = ".ser";
+    static final String FINGERPRINTS_EXTENSION = ".fingerprints";
+    static final String CLASS_NAME_SUFFIX = "Fixture";
+    static final List<String> DEFAULT_ALLOWED_CLASSES = Collections
+            .unmodifiableList(Arrays.asList("java.lang.*", "java.math.*", "java.time.*", "java.util.*"));
+
+    private final TestcaseGeneratorConfig config;
+    private final Path inputDirectory;
+    private final Path outputDirectory;
+    private Path fingerprintDirectory;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private ClassLoader classLoader = BatchGenerator.class.getClassLoader();
+    private String packageName = "";
+    private List<String> allowedClasses = DEFAULT_ALLOWED_CLASSES;
+
+    /**
+     * The inputs are processed with a {@link TestcaseGeneratorConfig#freeze() frozen} copy of the configuration.
+     */
+    public BatchGenerator(TestcaseGeneratorConfig config, Path inputDirectory, Path outputDirectory) {
+        this.config = config.freeze();
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory;
+        this.fingerprintDirectory = inputDirectory;
+    }
+
+    /**
+     * Sets the directory of the fingerprint files, defaults to the input directory.
+     */
+    public void setFingerprintDirectory(Path fingerprintDirectory) {
+        this.fingerprintDirectory = fingerprintDirectory;
+    }
+
+    /**
+     * Sets the number of fixtures generated at the same time, defaults to the number of processors.
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the class loader used to load the classes of the serialized objects.
+     */
+    public void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Sets the package of the fixtures, they are written into its directory under the output directory. Defaults to
+     * the default package.
+     */
+    public void setPackageName(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Sets the classes which can be deserialized from the {@code .ser} captures, the others are rejected. A pattern is
+     * either a class name, {@code com.example.*} for the classes of a package, or {@code com.example.**} for the
+     * classes of a package and its subpackages. Defaults to the {@code java.lang}, {@code java.math}, {@code java.time}
+     * and {@code java.util} packages, so the packages of the captured classes must be added.
+     */
+    public void setAllowedClasses(String... patterns) {
+        final List<String> allowed = new ArrayList<>(DEFAULT_ALLOWED_CLASSES);
+        allowed.addAll(Arrays.asList(patterns));
+        this.allowedClasses = allowed;
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        Files.createDirectories(getPackageDirectory());
+        Files.createDirectories(fingerprintDirectory);
+        final Map<String, String> previousHashes = readIndex();
+        final Map<String, String> hashes = new ConcurrentHashMap<>();
+        final Result result = new Result();
+        final Map<String, List<String>> classNames = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDirectory,
+                "*{" + SNAPSHOT_EXTENSION + "," + SERIALIZED_EXTENSION + "}")) {
+            for (Path file : files) {
+                final String fileName = file.getFileName().toString();
+                classNames.computeIfAbsent(toClassName(fileName), name -> new ArrayList<>()).add(fileName);
+            }
+        }
+        final Map<String, String> inputs = new TreeMap<>();
+        for (Map.Entry<String, List<String>> entry : classNames.entrySet()) {
+            final List<String> fileNames = entry.getValue();
+            if (fileNames.size() == 1) {
+                inputs.put(fileNames.get(0), entry.getKey());
+            } else {
+                Collections.sort(fileNames);
+                for (String fileName : fileNames) {
+                    result.failed.put(fileName, new IOException("The fixtures of " + String.join(", ", fileNames)
+                            + " would all be written to " + entry.getKey() + ".java, rename them"));
+                }
+            }
+        }
+        removeStaleOutputs(previousHashes.keySet(), classNames.keySet(), result);
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, inputs.size())));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<String, String> input : inputs.entrySet()) {
+                futures.add(pool.submit(() -> {
+                    process(input.getKey(), input.getValue(), previousHashes, hashes, result);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // recorded as a failure by process()
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        writeIndex(hashes);
+        return result;
+    }
+
+    /**
+     * Deletes the fixtures and the fingerprints of the captures which were generated by an earlier run, but are deleted
+     * since then, unless a current capture is written to the same class.
+     */
+    private void removeStaleOutputs(Set<String> previousInputs, Set<String> classNames, Result result) throws IOException {
+        for (String fileName : previousInputs) {
+            final String className = toClassName(fileName);
+            if (!classNames.contains(className)) {
+                final Path output = getPackageDirectory().resolve(className + ".java");
+                Files.deleteIfExists(output);
+                Files.deleteIfExists(fingerprintDirectory.resolve('.' + className + FINGERPRINTS_EXTENSION));
+                result.removed.put(fileName, output);
+            }
+        }
+    }
+
+    private void process(String fileName, String className, Map<String, String> previousHashes, Map<String, String> hashes,
+            Result result) {
+        try {
+            final byte[] content = Files.readAllBytes(inputDirectory.resolve(fileName));
+            final String hash = hash(content);
+            final Path output = getPackageDirectory().resolve(className + ".java");
+            hashes.put(fileName, hash);
+            if (hash.equals(previousHashes.get(fileName)) && Files.exists(output)) {
+                result.skipped.put(fileName, output);
+                return;
+            }
+            final TestcaseGenerator generator = load(fileName, content);
+            for (String type : generator.getReferencedTypes()) {
+                if (type.endsWith('.' + className)) {
+                    throw new IOException("The fixture class " + className + " would hide the captured " + type + ", rename " + fileName);
+                }
+            }
+            final Path fingerprints = fingerprintDirectory.resolve('.' + className + FINGERPRINTS_EXTENSION);
+            if (Files.exists(fingerprints)) {
+                FixtureFingerprints.read(fingerprints).keepNames(generator);
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+                new TestcaseSourceFormatter(generator, out).write(packageName, className);
+                if (out.checkError()) {
+                    throw new IOException("Unable to write " + output);
+                }
+            }
+            FixtureFingerprints.of(generator).write(fingerprints);
+            result.generated.put(fileName, output);
+        } catch (Exception | LinkageError e) {
+            // generate it again next time
+            hashes.remove(fileName);
+            result.failed.put(fileName, e);
+        }
+    }
+
+    private TestcaseGenerator load(String fileName, byte[] content) throws IOException, ClassNotFoundException {
+        if (fileName.endsWith(SNAPSHOT_EXTENSION)) {
+            return new SnapshotReader(config).read(ByteBuffer.wrap(content));
+        }
+        final Object roots;
+        try (ObjectInputStream in = new ClassLoaderObjectInputStream(new ByteArrayInputStream(content), classLoader, allowedClasses)) {
+            roots = in.readObject();
+        }
+        final TestcaseGenerator generator = config.startIntrospect();
+        if (roots instanceof Object[]) {
+            generator.introspect((Object[]) roots);
+        } else {
+            generator.introspect(roots);
+        }
+        return generator;
+    }
+
+    private Path getPackageDirectory() {
+        return packageName.isEmpty() ? outputDirectory : outputDirectory.resolve(packageName.replace('.', '/'));
+    }
+
+    /**
+     * @return the name of the capture file as a class name, with the separators removed, the words capitalized, and a
+     *         {@code Fixture} suffix, so it doesn't hide the captured class of the same name.
+     */
+    static String toClassName(String fileName) {
+        final String name = fileName.substring(0, fileName.lastIndexOf('.'));
+        final StringBuilder className = new StringBuilder();
+        boolean capitalize = true;
+        for (int i = 0; i < name.length(); i++) {
+            final char ch = name.charAt(i);
+            if (Character.isJavaIdentifierPart(ch) && ch != '_' && ch != '$') {
+                className.append(capitalize ? Character.toUpperCase(ch) : ch);
+                capitalize = false;
+            } else {
+                capitalize = true;
+            }
+        }
+        if (className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0))) {
+            className.insert(0, "Capture");
+        }
+        return className.append(CLASS_NAME_SUFFIX).toString();
+    }
+
+    private static String hash(byte[] content) throws NoSuchAlgorithmException {
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private Map<String, String> readIndex() throws IOException {
+        final Map<String, String> hashes = new TreeMap<>();
+        final Path index = outputDirectory.resolve(INDEX_FILE);
+        if (Files.exists(index)) {
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                final int separator = line.lastIndexOf(' ');
+                if (separator > 0) {
+                    hashes.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private void writeIndex(Map<String, String> hashes) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> entry : new TreeMap<>(hashes).entrySet()) {
+            lines.add(entry.getKey() + ' ' + entry.getValue());
+        }
+        Files.write(outputDirectory.resolve(INDEX_FILE), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The outcome of a run, keyed by the input file names.
+     */
+    public static class Result {
+        final Map<String, Path> generated = new ConcurrentHashMap<>();
+        final Map<String, Path> skipped = new ConcurrentHashMap<>();
+        final Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        final Map<String, Path> removed = new ConcurrentHashMap<>();
+
+        public Map<String, Path> getGenerated() {
+            return new TreeMap<>(generated);
+        }
+
+        public Map<String, Path> getSkipped() {
+            return new TreeMap<>(skipped);
+        }
+
+        public Map<String, Throwable> getFailed() {
+            return new TreeMap<>(failed);
+        }
+
+        /**
+         * @return the fixtures of the deleted captures, which are removed.
+         */
+        public Map<String, Path> getRemoved() {
+            return new TreeMap<>(removed);
+        }
+
+        @Override
+        public String toString() {
+            return generated.size() + " generated, " + skipped.size() + " unchanged, " + failed.size() + " failed, " + removed.size() + " removed";
+        }
+    }
+
+    /**
+     * @return true if the class, or the element class of an array matches one of the patterns.
+     */
+    static boolean isAllowed(String className, List<String> patterns) {
+        String name = className;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.length() == 1) {
+            // a primitive array
+            return true;
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        final String packageName = name.substring(0, Math.max(0, name.lastIndexOf('.')));
+        for (String pattern : patterns) {
+            if (pattern.endsWith(".**")) {
+                final String prefix = pattern.substring(0, pattern.length() - 3);
+                if (packageName.equals(prefix) || packageName.startsWith(prefix + '.')) {
+                    return true;
+                }
+            } else if (pattern.endsWith(".*") ? packageName.equals(pattern.substring(0, pattern.length() - 2)) : name.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+        private final ClassLoader classLoader;
+        private final List<String> allowedClasses;
+
+        ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader, List<String> allowedClasses) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+            this.allowedClasses = allowedClasses;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName(), allowedClasses)) {
+                throw new InvalidClassException(desc.getName(), "not an allowed class, add its package to the allowed classes");
+            }
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxy" + Arrays.toString(interfaces), "the proxies are not deserialized");
+        }
+    }
+
+    /**
+     * Usage: {@code BatchGenerator <input directory> <output directory> [--threads N] [--package NAME] [--allow PATTERN,...]}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length % 2 != 0) {
+            usage();
+        }
+        final BatchGenerator batch = new BatchGenerator(new TestcaseGeneratorConfig(), Paths.get(args[0]), Paths.get(args[1]));
+        for (int i = 2; i < args.length; i += 2) {
+            if ("--threads".equals(args[i])) {
+                batch.setThreads(Integer.parseInt(args[i + 1]));
+            } else if ("--package".equals(args[i])) {
+                batch.setPackageName(args[i + 1]);
+            } else if ("--allow".equals(args[i])) {
+                batch.setAllowedClasses(args[i + 1].split(","));
+            } else {
+                usage();
+            }
+        }
+        final Result result = batch.run();
+        for (Map.Entry<String, Throwable> failure : result.getFailed().entrySet()) {
+            System.err.println(failure.getKey() + ": " + failure.getValue());
+        }
+        System.out.println(result);
+        System.exit(result.failed.isEmpty() ? 0 : 1);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchGenerator <input directory> <output directory> [--threads N] [--package NAME] [--allow PATTERN,...]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A readable property of a bean type: the getter, the type accepted by the matching setter (null for collection
+ * properties without a setter) and the property name used for the generated setter call.
+ *
+ * The property table only depends on the class, so it is computed once per class and shared by every
+ * {@link IntrospectionPlan}.
+ */
+final class BeanProperty {
+
+    private static final ClassValue<BeanProperty[]> PROPERTIES = new ClassValue<BeanProperty[]>() {
+        @Override
+        protected BeanProperty[] computeValue(Class<?> type) {
+            return collectProperties(type);
+        }
+    };
+
+    private final String name;
+    private final Method getter;
+    private final Class<?> setterType;
+
+    BeanProperty(String name, Method getter, Class<?> setterType) {
+        this.name = name;
+        this.getter = getter;
+        this.setterType = setterType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Method getGetter() {
+        return getter;
+    }
+
+    public Class<?> getSetterType() {
+        return setterType;
+    }
+
+    /**
+     * @return the properties of the type, sorted by name. The returned array is shared, it must not be modified.
+     */
+    static BeanProperty[] of(Class<?> type) {
+        return PROPERTIES.get(type);
+    }
+
+    private static BeanProperty[] collectProperties(Class<?> type) {
+        final Method[] methods = type.getMethods();
+        final Map<String, Class<?>> setters = new HashMap<>();
+        for (Method method : methods) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if ((parameterTypes.length == 1) && method.getName().startsWith("set")) {
+                setters.put(method.getName().substring(3), parameterTypes[0]);
+            }
+        }
+        final List<BeanProperty> properties = new ArrayList<>();
+        for (Method method : methods) {
+            if (method.getParameterCount() == 0 && !method.isBridge() && !Void.TYPE.equals(method.getReturnType())) {
+                final String propertyName = getPropertyName(method);
+                if (propertyName != null) {
+                    final Class<?> setterType = setters.get(propertyName);
+                    if (setterType != null && setterType.equals(method.getReturnType())) {
+                        properties.add(new BeanProperty(propertyName, method, setterType));
+                    } else if (Collection.class.isAssignableFrom(method.getReturnType())) {
+                        properties.add(new BeanProperty(propertyName, method, null));
+                    }
+                }
+            }
+        }
+        properties.sort(Comparator.comparing(BeanProperty::getName));
+        return properties.toArray(new BeanProperty[properties.size()]);
+    }
+
+    private static String getPropertyName(Method method) {
+        final String name = method.getName();
+        final Class<?> returnType = method.getReturnType();
+        if (name.startsWith("get")) {
+            return Class.class.equals(returnType) ? null : name.substring(3);
+        } else if (name.startsWith("is")) {
+            return (returnType == boolean.class || returnType == Boolean.class) ? name.substring(2) : null;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+/**
+ * Receives the measurements of a capture. The methods can be called from multiple threads when the graph is walked
+ * in parallel. The timings are only measured when a listener other than {@link #NONE} is configured.
+ */
+public interface CaptureListener {
+
+    CaptureListener NONE = new CaptureListener() {
+    };
+
+    /**
+     * A new type is found in the graph, and its introspection plan is created.
+     */
+    default void typeDiscovered(Class<?> type) {
+    }
+
+    /**
+     * An object is introspected, the time includes reading all of its properties.
+     */
+    default void objectCaptured(Class<?> type, long nanos) {
+    }
+
+    /**
+     * A getter is called on an object.
+     */
+    default void propertyRead(Class<?> type, String property, long nanos) {
+    }
+
+    /**
+     * A fixture is written, with the given number of characters.
+     */
+    default void codeEmitted(String className, long characters) {
+    }
+
+}
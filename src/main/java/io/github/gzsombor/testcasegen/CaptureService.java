@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Captures objects from live traffic in the background. {@link #submit(String, Object...)} never blocks: it samples
+ * the calls, and hands the roots over to the worker threads through a bounded, lock-free queue, or drops them when the
+ * queue is full. The workers introspect each submission with its own {@link TestcaseGenerator}, and pass it to the
+ * {@link CaptureSink}.
+ *
+ * The objects are read later, on a worker thread, so they must not be modified after they are submitted - submit the
+ * payload when the request is done with it, or a copy of it.
+ */
+public class CaptureService implements AutoCloseable {
+
+    private final TestcaseGeneratorConfig config;
+    private final CaptureSink sink;
+    private final int queueCapacity;
+    private final Queue<Submission> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /**
+     * A permit for each queued submission, and one for each worker on close, so the idle workers wait without
+     * polling.
+     */
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile double samplingRate = 1.0;
+    private volatile boolean closed;
+    private volatile Throwable lastFailure;
+
+    /**
+     * Starts the given number of workers, on virtual threads where they are available, otherwise on daemon threads. The
+     * workers share a {@link TestcaseGeneratorConfig#freeze() frozen} copy of the configuration.
+     */
+    public CaptureService(TestcaseGeneratorConfig config, CaptureSink sink, int queueCapacity, int workerCount) {
+        this(config, sink, queueCapacity, workerCount, defaultThreadFactory());
+    }
+
+    public CaptureService(TestcaseGeneratorConfig config, CaptureSink sink, int queueCapacity, int workerCount,
+            ThreadFactory threadFactory) {
+        if (queueCapacity <= 0 || workerCount <= 0) {
+            throw new IllegalArgumentException("The queue capacity and the worker count must be positive");
+        }
+        this.config = config.freeze();
+        this.sink = sink;
+        this.queueCapacity = queueCapacity;
+        for (int i = 0; i < workerCount; i++) {
+            final Thread worker = threadFactory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Captures only the given fraction of the submissions, between 0 and 1. Defaults to 1, every submission is
+     * captured.
+     */
+    public void setSamplingRate(double samplingRate) {
+        if (samplingRate < 0 || samplingRate > 1) {
+            throw new IllegalArgumentException("The sampling rate must be between 0 and 1: " + samplingRate);
+        }
+        this.samplingRate = samplingRate;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Schedules the objects for capturing, if the submission is sampled, and there is room in the queue.
+     *
+     * @param name
+     *            the prefix of the capture name, a sequence number is appended to it.
+     * @return true if the objects are queued.
+     */
+    public boolean submit(String name, Object... roots) {
+        submitted.increment();
+        final double rate = samplingRate;
+        if (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            sampledOut.increment();
+            return false;
+        }
+        if (closed || queueDepth.incrementAndGet() > queueCapacity) {
+            if (!closed) {
+                queueDepth.decrementAndGet();
+            }
+            dropped.increment();
+            return false;
+        }
+        queue.offer(new Submission(name, roots));
+        available.release();
+        return true;
+    }
+
+    private void work() {
+        while (true) {
+            available.acquireUninterruptibly();
+            final Submission submission = queue.poll();
+            if (submission == null) {
+                // woken up by close, and the queue is drained
+                return;
+            }
+            queueDepth.decrementAndGet();
+            try {
+                final TestcaseGenerator generator = config.startIntrospect();
+                generator.introspect(submission.roots);
+                sink.write(submission.name + sequence.incrementAndGet(), generator);
+                captured.increment();
+            } catch (Throwable e) {
+                // the worker survives even an error, a dead worker would leave the queue filling up and dropping
+                lastFailure = e;
+                failed.increment();
+            }
+        }
+    }
+
+    /**
+     * @return the number of {@link #submit(String, Object...)} calls.
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return the number of submissions which are not sampled.
+     */
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * @return the number of submissions dropped, because the queue was full or the service was closed.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+    /**
+     * @return the number of submissions which could not be captured or written, because of an exception or an error,
+     *         see {@link #getLastFailure()}.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return the number of submissions waiting for a worker.
+     */
+    public int getQueueDepth() {
+        return Math.max(0, queueDepth.get());
+    }
+
+    /**
+     * Stops accepting submissions, and waits until the queued ones are written. If the calling thread is interrupted,
+     * it stops waiting with its interrupt flag set, and the workers write the remaining submissions in the background.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        available.release(workers.size());
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // a submission racing with close can be queued after the workers are finished
+        while (queue.poll() != null) {
+            queueDepth.decrementAndGet();
+            dropped.increment();
+        }
+    }
+
+    private static ThreadFactory defaultThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method name = Class.forName("java.lang.Thread$Builder").getMethod("name", String.class, long.class);
+            final Object namedBuilder = name.invoke(builder, "testcasegen-capture-", 0L);
+            final Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(namedBuilder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // no virtual threads before Java 21
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, "testcasegen-capture-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Submission {
+        final String name;
+        final Object[] roots;
+
+        Submission(String name, Object[] roots) {
+            this.name = name;
+            this.roots = roots;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable copy of the settings of a {@link TestcaseGeneratorConfig}, read by the generators. Every field is final,
+ * and the collections are unmodifiable copies, so a copy can be shared between threads even without a happens-before
+ * edge.
+ */
+final class CaptureSettings {
+
+    final Map<Class<?>, Introspector> builtinIntrospector;
+    final Set<Class<?>> skipClasses;
+    final AccessorFactory accessorFactory;
+    final Map<Class<?>, GeneratedAccessors> discoveredAccessors;
+    final Map<Class<?>, GeneratedAccessors> generatedAccessors;
+    final boolean useGeneratedAccessors;
+    final boolean deduplicateEqualObjects;
+    final boolean deduplicateStructures;
+    final ForkJoinPool capturePool;
+    final int maxDepth;
+    final int maxNodes;
+    final int maxCollectionSize;
+    final CollectionSampling collectionSampling;
+    final Duration captureTimeout;
+    final CaptureListener captureListener;
+    final int maxMethodSize;
+    final int maxClassSize;
+    final Set<String> identityProperties;
+
+    /**
+     * The plans resolved by the generators of a frozen configuration, so the concurrent captures introspect each class
+     * once. Null for the settings of a configuration which can be changed, every generator resolves its own plans then.
+     */
+    final ConcurrentMap<Class<?>, Introspector> sharedPlans;
+
+    CaptureSettings(TestcaseGeneratorConfig source, ConcurrentMap<Class<?>, Introspector> sharedPlans) {
+        this.builtinIntrospector = Collections.unmodifiableMap(new HashMap<>(source.builtinIntrospector));
+        this.skipClasses = Collections.unmodifiableSet(new HashSet<>(source.skipClasses));
+        this.accessorFactory = source.accessorFactory;
+        this.discoveredAccessors = source.discoveredAccessors;
+        this.generatedAccessors = Collections.unmodifiableMap(new HashMap<>(source.generatedAccessors));
+        this.useGeneratedAccessors = source.useGeneratedAccessors;
+        this.deduplicateEqualObjects = source.deduplicateEqualObjects;
+        this.deduplicateStructures = source.deduplicateStructures;
+        this.capturePool = source.capturePool;
+        this.maxDepth = source.maxDepth;
+        this.maxNodes = source.maxNodes;
+        this.maxCollectionSize = source.maxCollectionSize;
+        this.collectionSampling = source.collectionSampling;
+        this.captureTimeout = source.captureTimeout;
+        this.captureListener = source.captureListener;
+        this.maxMethodSize = source.maxMethodSize;
+        this.maxClassSize = source.maxClassSize;
+        this.identityProperties = Collections.unmodifiableSet(new HashSet<>(source.identityProperties));
+        this.sharedPlans = sharedPlans;
+    }
+
+    GeneratedAccessors getGeneratedAccessors(Class<?> type) {
+        if (!useGeneratedAccessors) {
+            return null;
+        }
+        final GeneratedAccessors accessors = generatedAccessors.get(type);
+        return accessors != null ? accessors : discoveredAccessors.get(type);
+    }
+
+    boolean isGraphBudgetSet() {
+        return maxDepth != Integer.MAX_VALUE || maxNodes != Integer.MAX_VALUE || captureTimeout != null;
+    }
+}
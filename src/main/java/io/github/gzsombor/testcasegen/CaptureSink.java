@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Receives the objects captured by the {@link CaptureService}, called from its worker threads.
+ */
+@FunctionalInterface
+public interface CaptureSink {
+
+    /**
+     * @param name
+     *            the unique name of the capture, usable as a class name
+     */
+    void write(String name, TestcaseGenerator generator) throws IOException;
+
+    /**
+     * Writes a {@code <name>.java} fixture for each capture into the directory.
+     */
+    static CaptureSink sourceFiles(Path directory) {
+        return (name, generator) -> {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve(name + ".java"), StandardCharsets.UTF_8))) {
+                new TestcaseSourceFormatter(generator, out).write(name);
+                if (out.checkError()) {
+                    throw new IOException("Unable to write " + name + ".java into " + directory);
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes a {@code <name>.snapshot} file for each capture into the directory, the code can be generated later with
+     * the {@link SnapshotReader}. This is cheaper than writing the source.
+     */
+    static CaptureSink snapshots(Path directory) {
+        return (name, generator) -> new SnapshotWriter(generator).write(directory.resolve(name + ".snapshot"));
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CaptureListener} which aggregates the measurements per type and per property, and prints a summary, to
+ * find the entities which make a capture slow.
+ */
+public class CaptureStatistics implements CaptureListener {
+
+    private final ConcurrentMap<Class<?>, Timing> types = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timing> properties = new ConcurrentHashMap<>();
+    private final LongAdder emittedCharacters = new LongAdder();
+
+    @Override
+    public void objectCaptured(Class<?> type, long nanos) {
+        types.computeIfAbsent(type, t -> new Timing(t.getName())).add(nanos);
+    }
+
+    @Override
+    public void propertyRead(Class<?> type, String property, long nanos) {
+        final String key = type.getName() + '.' + property;
+        Timing timing = properties.get(key);
+        if (timing == null) {
+            timing = properties.computeIfAbsent(key, Timing::new);
+        }
+        timing.add(nanos);
+    }
+
+    @Override
+    public void codeEmitted(String className, long characters) {
+        emittedCharacters.add(characters);
+    }
+
+    public long getCapturedObjects() {
+        return types.values().stream().mapToLong(Timing::getCount).sum();
+    }
+
+    public long getPropertyReads() {
+        return properties.values().stream().mapToLong(Timing::getCount).sum();
+    }
+
+    public long getEmittedCharacters() {
+        return emittedCharacters.sum();
+    }
+
+    /**
+     * @return the timings of the types, the most expensive first.
+     */
+    public List<Timing> getTypeTimings() {
+        return sorted(types.values());
+    }
+
+    /**
+     * @return the timings of the properties, the most expensive first.
+     */
+    public List<Timing> getPropertyTimings() {
+        return sorted(properties.values());
+    }
+
+    private static List<Timing> sorted(Iterable<Timing> timings) {
+        final List<Timing> result = new ArrayList<>();
+        timings.forEach(result::add);
+        result.sort(Comparator.comparingLong(Timing::getTotalNanos).reversed());
+        return result;
+    }
+
+    public void printSummary(PrintStream out, int limit) {
+        out.println(String.format("Captured %d objects with %d getter calls, emitted %d characters",
+                getCapturedObjects(), getPropertyReads(), getEmittedCharacters()));
+        out.println(String.format("%-60s %10s %12s %12s", "Type", "Objects", "Total ms", "Max us"));
+        print(out, getTypeTimings(), limit);
+        out.println(String.format("%-60s %10s %12s %12s", "Slowest getters", "Calls", "Total ms", "Max us"));
+        print(out, getPropertyTimings(), limit);
+    }
+
+    private static void print(PrintStream out, List<Timing> timings, int limit) {
+        for (Timing timing : timings.subList(0, Math.min(limit, timings.size()))) {
+            out.println(String.format("%-60s %10d %12.3f %12.1f", timing.getName(), timing.getCount(),
+                    timing.getTotalNanos() / 1e6, timing.getMaxNanos() / 1e3));
+        }
+    }
+
+    public static final class Timing {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Timing(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Selects the elements which are kept from a collection which is larger than the configured limit. The selected
+ * elements keep their original order.
+ */
+public enum CollectionSampling {
+
+    HEAD {
+        @Override
+        List<Object> sample(Collection<?> values, int max) {
+            final List<Object> result = new ArrayList<>(max);
+            final Iterator<?> iter = values.iterator();
+            while (result.size() < max && iter.hasNext()) {
+                result.add(iter.next());
+            }
+            return result;
+        }
+    },
+    TAIL {
+        @Override
+        List<Object> sample(Collection<?> values, int max) {
+            final List<Object> result = new ArrayList<>(max);
+            int skip = values.size() - max;
+            for (Object value : values) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    result.add(value);
+                }
+            }
+            return result;
+        }
+    },
+    /**
+     * Uniform random sample in a single pass. The random generator is seeded with the size of the collection, so the
+     * same input always produces the same fixture.
+     */
+    RANDOM {
+        @Override
+        List<Object> sample(Collection<?> values, int max) {
+            final List<Object> result = new ArrayList<>(max);
+            final Random random = new Random(values.size());
+            int remaining = values.size();
+            for (Object value : values) {
+                if (result.size() == max) {
+                    break;
+                }
+                if (random.nextInt(remaining) < max - result.size()) {
+                    result.add(value);
+                }
+                remaining--;
+            }
+            return result;
+        }
+    };
+
+    abstract List<Object> sample(Collection<?> values, int max);
+
+}
@@ -0,0 +1,474 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the objects of a fixture which is written by {@link TestcaseSourceFormatter#writeExternalized}, from the data
+ * resource next to the fixture class. The resource is parsed on the first access, and an object is created when it is
+ * requested, or referred by a requested object. The objects are set up with the same setter calls as the generated
+ * getters would make, so the fixture class stays small, no matter how many objects are captured.
+ *
+ * The resource is line based text in UTF-8:
+ *
+ * <pre>
+ * data    = "testcasegen-data 1" (node | set | comment)*
+ * node    = "node " className                 - starts the next object, the objects are numbered from 0
+ * set     = "set " property " " value         - a setter call on the last object
+ * comment = "# " text
+ * value   = "null" | "@" index | '"' escaped text '"'
+ *         | ("boolean" | "int" | "long" | "short" | "byte" | "char" | "float" | "double") ":" number
+ *         | ("BigDecimal" | "BigInteger" | "LocalDate" | "Instant") ":" text | "enum:" className ":" name
+ *         | primitiveType "[]:" Base64 of the big-endian values
+ *         | ("ArrayList" | "HashSet") "[" value (", " value)* "]"
+ *         | mapClass "[" key ", " value (", " key ", " value)* "]"
+ * mapClass = the simple name of a java.util map class, or the name of another class, see
+ *            {@link io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator#getMapType(Map)}
+ * </pre>
+ *
+ * The text is escaped with a backslash before the quotes and the backslashes, and with unicode escapes for the
+ * control characters and the unpaired surrogates. The sets are created as a {@link LinkedHashSet} and the
+ * {@code HashMap}s as a {@link LinkedHashMap}, so the elements keep their captured order, the other maps are created
+ * with the no-arg constructor of their class. The collection properties without a setter are filled through their
+ * getter.
+ */
+public final class FixtureData {
+
+    static final String HEADER = "testcasegen-data 1";
+
+    private final Class<?> owner;
+    private final String resource;
+    private final Map<Class<?>, Map<String, List<Method>>> setters = new HashMap<>();
+
+    /**
+     * The class name, and the property names and values of each object.
+     */
+    private List<List<String>> nodes;
+    private Object[] objects;
+
+    /**
+     * @param resource
+     *            the name of the data resource, relative to the package of the owner class.
+     */
+    public FixtureData(Class<?> owner, String resource) {
+        this.owner = owner;
+        this.resource = resource;
+    }
+
+    /**
+     * @return the object with the given index, created and set up on the first call.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(int index) {
+        if (nodes == null) {
+            load();
+        }
+        if (index < 0 || index >= nodes.size()) {
+            throw new IndexOutOfBoundsException("No object " + index + " in " + resource + ", it has " + nodes.size());
+        }
+        if (objects[index] == null) {
+            create(index);
+        }
+        return (T) objects[index];
+    }
+
+    private void load() {
+        final List<List<String>> loaded = new ArrayList<>();
+        try (InputStream in = owner.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new ReflectionException("The fixture data " + resource + " is not found next to " + owner.getName());
+            }
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            if (!HEADER.equals(reader.readLine())) {
+                throw new ReflectionException(resource + " is not a testcasegen fixture data");
+            }
+            List<String> node = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("node ")) {
+                    node = new ArrayList<>();
+                    node.add(line.substring(5));
+                    loaded.add(node);
+                } else if (line.startsWith("set ") && node != null) {
+                    final int separator = line.indexOf(' ', 4);
+                    node.add(line.substring(4, separator));
+                    node.add(line.substring(separator + 1));
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    throw new ReflectionException("Unexpected line in " + resource + ": " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new ReflectionException("Unable to read " + resource, e);
+        }
+        this.nodes = loaded;
+        this.objects = new Object[loaded.size()];
+    }
+
+    /**
+     * Creates the object and calls its setters, creating the referred objects first, like the generated getters.
+     */
+    private void create(int index) {
+        final List<String> node = nodes.get(index);
+        final Class<?> type = loadClass(node.get(0));
+        final Object object;
+        try {
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            object = constructor.newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new ReflectionException("Unable to create " + type.getName(), e);
+        }
+        // registered before the setters are called, so the cycles end here
+        objects[index] = object;
+        for (int i = 1; i < node.size(); i += 2) {
+            final String property = node.get(i);
+            final Parser parser = new Parser(node.get(i + 1));
+            final Object value = parser.parseValue();
+            parser.expectEnd();
+            set(object, property, value);
+        }
+    }
+
+    private void set(Object object, String property, Object value) {
+        final List<Method> candidates = setters.computeIfAbsent(object.getClass(), FixtureData::findSetters).get(property);
+        if (candidates != null) {
+            for (Method setter : candidates) {
+                if (value == null ? !setter.getParameterTypes()[0].isPrimitive() : wrap(setter.getParameterTypes()[0]).isInstance(value)) {
+                    try {
+                        setter.invoke(object, value);
+                        return;
+                    } catch (InvocationTargetException e) {
+                        throw new ReflectionException("Unable to set " + property + " of " + object.getClass().getName(), e.getCause());
+                    } catch (IllegalAccessException e) {
+                        throw new ReflectionException("Unable to set " + property + " of " + object.getClass().getName(), e);
+                    }
+                }
+            }
+        }
+        if (candidates == null && (value instanceof Collection || value instanceof Map)) {
+            // a collection property without a setter, filled through its getter
+            fill(object, property, value);
+            return;
+        }
+        throw new ReflectionException("No setter for " + property + " of " + object.getClass().getName() + " accepting " + value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fill(Object object, String property, Object value) {
+        final Object current;
+        try {
+            current = object.getClass().getMethod("get" + property).invoke(object);
+        } catch (InvocationTargetException e) {
+            throw new ReflectionException("Unable to get " + property + " of " + object.getClass().getName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new ReflectionException("No setter or getter for " + property + " of " + object.getClass().getName(), e);
+        }
+        if (current instanceof Collection && value instanceof Collection) {
+            ((Collection<Object>) current).addAll((Collection<Object>) value);
+        } else if (current instanceof Map && value instanceof Map) {
+            ((Map<Object, Object>) current).putAll((Map<Object, Object>) value);
+        } else {
+            throw new ReflectionException("Unable to fill " + property + " of " + object.getClass().getName() + " with " + value);
+        }
+    }
+
+    private static Map<String, List<Method>> findSetters(Class<?> type) {
+        final Map<String, List<Method>> result = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.getParameterCount() == 1 && method.getName().startsWith("set")) {
+                result.computeIfAbsent(method.getName().substring(3), name -> new ArrayList<>()).add(method);
+            }
+        }
+        return result;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == char.class) {
+            return Character.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == float.class) {
+            return Float.class;
+        }
+        return Double.class;
+    }
+
+    private Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className, false, owner.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new ReflectionException("Unable to load " + className + " for " + resource, e);
+        }
+    }
+
+    /**
+     * Reads a value of a setter line.
+     */
+    private final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object parseValue() {
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            final char first = text.charAt(position);
+            if (first == '@') {
+                position++;
+                final int index = Integer.parseInt(readToken());
+                if (objects[index] == null) {
+                    create(index);
+                }
+                return objects[index];
+            }
+            if (first == '"') {
+                return readString();
+            }
+            final int start = position;
+            while (position < text.length() && (Character.isJavaIdentifierPart(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            final String tag = text.substring(start, position);
+            if (text.startsWith("[]:", position)) {
+                position += 3;
+                return decodeArray(tag, Base64.getDecoder().decode(readToken()));
+            }
+            if (text.startsWith("[", position)) {
+                position++;
+                return readContainer(tag);
+            }
+            expect(':');
+            return decodeScalar(tag, readToken());
+        }
+
+        private Object readContainer(String tag) {
+            final List<Object> values = new ArrayList<>();
+            while (!text.startsWith("]", position)) {
+                if (!values.isEmpty()) {
+                    expect(',');
+                    expect(' ');
+                }
+                values.add(parseValue());
+            }
+            position++;
+            switch (tag) {
+            case "ArrayList":
+                return values;
+            case "HashSet":
+                return new LinkedHashSet<>(values);
+            case "HashMap":
+                return putAll(new LinkedHashMap<>(), values);
+            default:
+                return putAll(newMap(tag), values);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<Object, Object> newMap(String mapType) {
+            final Class<?> type = loadClass(mapType.indexOf('.') < 0 ? "java.util." + mapType : mapType);
+            if (!Map.class.isAssignableFrom(type)) {
+                throw error("Unknown container " + mapType);
+            }
+            try {
+                return (Map<Object, Object>) type.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new ReflectionException("Unable to create a " + mapType + " for " + resource, e);
+            }
+        }
+
+        private Map<Object, Object> putAll(Map<Object, Object> map, List<Object> values) {
+            for (int i = 0; i + 1 < values.size(); i += 2) {
+                map.put(values.get(i), values.get(i + 1));
+            }
+            return map;
+        }
+
+        private Object decodeScalar(String tag, String value) {
+            switch (tag) {
+            case "boolean":
+                return Boolean.valueOf(value);
+            case "int":
+                return Integer.valueOf(value);
+            case "long":
+                return Long.valueOf(value);
+            case "short":
+                return Short.valueOf(value);
+            case "byte":
+                return Byte.valueOf(value);
+            case "char":
+                return (char) Integer.parseInt(value);
+            case "float":
+                return Float.valueOf(value);
+            case "double":
+                return Double.valueOf(value);
+            case "BigDecimal":
+                return new BigDecimal(value);
+            case "BigInteger":
+                return new BigInteger(value);
+            case "LocalDate":
+                return LocalDate.parse(value);
+            case "Instant":
+                return Instant.parse(value);
+            case "enum": {
+                final int separator = value.lastIndexOf(':');
+                return enumValue(loadClass(value.substring(0, separator)), value.substring(separator + 1));
+            }
+            default:
+                throw error("Unknown value type " + tag);
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Object enumValue(Class<?> type, String name) {
+            return Enum.valueOf((Class) type, name);
+        }
+
+        private Object decodeArray(String componentType, byte[] bytes) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            switch (componentType) {
+            case "byte":
+                return bytes;
+            case "boolean": {
+                final boolean[] result = new boolean[bytes.length];
+                for (int i = 0; i < bytes.length; i++) {
+                    result[i] = bytes[i] != 0;
+                }
+                return result;
+            }
+            case "char": {
+                final char[] result = new char[bytes.length / 2];
+                buffer.asCharBuffer().get(result);
+                return result;
+            }
+            case "short": {
+                final short[] result = new short[bytes.length / 2];
+                buffer.asShortBuffer().get(result);
+                return result;
+            }
+            case "int": {
+                final int[] result = new int[bytes.length / 4];
+                buffer.asIntBuffer().get(result);
+                return result;
+            }
+            case "float": {
+                final float[] result = new float[bytes.length / 4];
+                buffer.asFloatBuffer().get(result);
+                return result;
+            }
+            case "long": {
+                final long[] result = new long[bytes.length / 8];
+                buffer.asLongBuffer().get(result);
+                return result;
+            }
+            case "double": {
+                final double[] result = new double[bytes.length / 8];
+                buffer.asDoubleBuffer().get(result);
+                return result;
+            }
+            default:
+                throw error("Unknown array type " + componentType);
+            }
+        }
+
+        /**
+         * @return the text up to the next separator of the containers.
+         */
+        private String readToken() {
+            final int start = position;
+            while (position < text.length() && text.charAt(position) != ',' && text.charAt(position) != ']') {
+                position++;
+            }
+            return text.substring(start, position);
+        }
+
+        private String readString() {
+            final StringBuilder result = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                final char ch = text.charAt(position++);
+                if (ch == '"') {
+                    return result.toString();
+                } else if (ch != '\\') {
+                    result.append(ch);
+                } else {
+                    final char escaped = text.charAt(position++);
+                    if (escaped == 'u') {
+                        result.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    } else {
+                        result.append(escaped);
+                    }
+                }
+            }
+        }
+
+        private void expect(char ch) {
+            if (position >= text.length() || text.charAt(position) != ch) {
+                throw error("Expected '" + ch + "'");
+            }
+            position++;
+        }
+
+        void expectEnd() {
+            if (position != text.length()) {
+                throw error("Unexpected text after the value");
+            }
+        }
+
+        private ReflectionException error(String message) {
+            return new ReflectionException(message + " at " + position + " in '" + text + "' of " + resource);
+        }
+    }
+}
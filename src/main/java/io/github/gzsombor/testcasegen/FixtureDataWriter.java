@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+
+/**
+ * Writes the captured objects in the format read by {@link FixtureData}. The values which can't be written as data -
+ * the values of custom introspectors, or the ones read back from a snapshot - are left out with a comment, like the
+ * values which are skipped in the generated code.
+ */
+final class FixtureDataWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final TestcaseGenerator ctx;
+    private final Map<SourceCodeGenerator, Integer> indexes = new IdentityHashMap<>();
+    private final StringBuilder value = new StringBuilder();
+
+    FixtureDataWriter(TestcaseGenerator ctx, List<IntrospectionResult> nodes) {
+        this.ctx = ctx;
+        for (IntrospectionResult node : nodes) {
+            indexes.put(node, indexes.size());
+        }
+    }
+
+    void write(List<IntrospectionResult> nodes, Appendable out) throws IOException {
+        out.append(FixtureData.HEADER).append('\n');
+        for (IntrospectionResult node : nodes) {
+            if (node.getType() == null) {
+                throw new IllegalStateException("The class of " + node.getTypeName() + " is not known, it is read from a snapshot");
+            }
+            out.append("node ").append(node.getType().getName()).append('\n');
+            for (Map.Entry<String, Object> entry : node.getAttributes().entrySet()) {
+                final String truncation = IntrospectionResult.joinTruncations(node.getTruncation(entry.getKey()),
+                        entry.getValue() instanceof Collection ? ctx.getSourceCodeGenerator(entry.getValue()) : null);
+                if (truncation != null) {
+                    out.append("# ").append(entry.getKey()).append(' ').append(truncation).append('\n');
+                }
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                value.setLength(0);
+                if (encode(entry.getValue())) {
+                    out.append("set ").append(entry.getKey()).append(' ').append(value).append('\n');
+                } else {
+                    final String reason = ctx.getTruncation(entry.getValue());
+                    out.append("# ").append(entry.getKey()).append(' ');
+                    out.append(reason != null ? reason : "skipped, " + entry.getValue().getClass().getName() + " is not written as data");
+                    out.append('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the value to {@link #value}.
+     *
+     * @return false if the value can't be written, in which case the appended text has to be dropped.
+     */
+    private boolean encode(Object object) {
+        if (object == null) {
+            value.append("null");
+            return true;
+        }
+        final SourceCodeGenerator captured = ctx.introspectionStatus.get(object);
+        if (captured instanceof IntrospectionResult) {
+            final Integer index = indexes.get(captured);
+            if (index == null) {
+                return false;
+            }
+            value.append('@').append(index.intValue());
+            return true;
+        }
+        if (object instanceof SourceCodeGenerator || ctx.getTruncation(object) != null) {
+            return false;
+        }
+        if (object instanceof String) {
+            writeString((String) object);
+        } else if (object instanceof Enum) {
+            value.append("enum:").append(((Enum<?>) object).getDeclaringClass().getName()).append(':').append(((Enum<?>) object).name());
+        } else if (object instanceof Character) {
+            value.append("char:").append((int) (Character) object);
+        } else if (object instanceof Boolean || object instanceof Integer || object instanceof Long || object instanceof Short
+                || object instanceof Byte || object instanceof Float || object instanceof Double) {
+            final String type = object.getClass().getSimpleName();
+            value.append(object instanceof Integer ? "int" : type.toLowerCase()).append(':').append(object);
+        } else if (object instanceof BigDecimal || object instanceof BigInteger || object instanceof LocalDate || object instanceof Instant) {
+            value.append(object.getClass().getSimpleName()).append(':').append(object);
+        } else if (object.getClass().isArray() && object.getClass().getComponentType().isPrimitive()) {
+            value.append(object.getClass().getComponentType().getName()).append("[]:").append(Base64.getEncoder().encodeToString(toBytes(object)));
+        } else if (object instanceof Collection) {
+            value.append(object instanceof Set ? "HashSet[" : "ArrayList[");
+            boolean first = true;
+            for (Object element : (Collection<?>) object) {
+                first = encodeElement(element, first);
+            }
+            value.append(']');
+        } else if (object instanceof Map) {
+            final String mapType = MapSourceCodeGenerator.getMapType((Map<?, ?>) object);
+            if (mapType == null) {
+                return false;
+            }
+            value.append(mapType).append('[');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                final int start = value.length();
+                if (!first) {
+                    value.append(", ");
+                }
+                if (encode(entry.getKey())) {
+                    value.append(", ");
+                    if (encode(entry.getValue())) {
+                        first = false;
+                        continue;
+                    }
+                }
+                value.setLength(start);
+            }
+            value.append(']');
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends an element of a collection, or leaves it out if it can't be written.
+     *
+     * @return true if nothing is appended yet to the collection.
+     */
+    private boolean encodeElement(Object element, boolean first) {
+        final int start = value.length();
+        if (!first) {
+            value.append(", ");
+        }
+        if (encode(element)) {
+            return false;
+        }
+        value.setLength(start);
+        return first;
+    }
+
+    private void writeString(String text) {
+        value.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            final boolean pair = Character.isHighSurrogate(ch) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1));
+            if (pair) {
+                value.append(ch).append(text.charAt(++i));
+            } else if (ch == '"' || ch == '\\') {
+                value.append('\\').append(ch);
+            } else if (ch < 0x20 || ch == 0x7f || Character.isSurrogate(ch)) {
+                value.append("\\u").append(HEX[ch >> 12]).append(HEX[(ch >> 8) & 0xf]).append(HEX[(ch >> 4) & 0xf]).append(HEX[ch & 0xf]);
+            } else {
+                value.append(ch);
+            }
+        }
+        value.append('"');
+    }
+
+    private static byte[] toBytes(Object array) {
+        if (array instanceof byte[]) {
+            return (byte[]) array;
+        } else if (array instanceof boolean[]) {
+            final boolean[] values = (boolean[]) array;
+            final byte[] result = new byte[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = (byte) (values[i] ? 1 : 0);
+            }
+            return result;
+        } else if (array instanceof char[]) {
+            final ByteBuffer buffer = ByteBuffer.allocate(((char[]) array).length * 2);
+            buffer.asCharBuffer().put((char[]) array);
+            return buffer.array();
+        } else if (array instanceof short[]) {
+            final ByteBuffer buffer = ByteBuffer.allocate(((short[]) array).length * 2);
+            buffer.asShortBuffer().put((short[]) array);
+            return buffer.array();
+        } else if (array instanceof int[]) {
+            final ByteBuffer buffer = ByteBuffer.allocate(((int[]) array).length * 4);
+            buffer.asIntBuffer().put((int[]) array);
+            return buffer.array();
+        } else if (array instanceof float[]) {
+            final ByteBuffer buffer = ByteBuffer.allocate(((float[]) array).length * 4);
+            buffer.asFloatBuffer().put((float[]) array);
+            return buffer.array();
+        } else if (array instanceof long[]) {
+            final ByteBuffer buffer = ByteBuffer.allocate(((long[]) array).length * 8);
+            buffer.asLongBuffer().put((long[]) array);
+            return buffer.array();
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(((double[]) array).length * 8);
+        buffer.asDoubleBuffer().put((double[]) array);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+
+/**
+ * The identity and the content hash of the captured objects of a fixture, kept next to the generated class, so a new
+ * capture of the same data can be generated with the same getter names, and only the getters of the changed objects
+ * differ from the previous version of the class. The whole class is still written again, only its names are stable.
+ *
+ * The identity of an object is the value of its {@link TestcaseGeneratorConfig#addIdentityProperties identity
+ * property} if it has one, or else the path of property names through which it is first reached from the root
+ * objects, like {@code Order#0.Customer.Address}. The objects which are only reachable through a custom
+ * {@link Introspector} get their position among such objects of the same type, in the order of the getters, as their
+ * identity - an inserted object shifts it, so these objects keep their names mostly through their content. The content
+ * hash covers the values of the object, but not the objects it refers to. An object is matched with the previous
+ * object of the same identity and content first, then with one of the same content, so an object which only moved in
+ * a list keeps its name, even though its path changed, and only then with one of the same identity. The references
+ * are compared after the renaming, through the hash of the names of the referred objects.
+ *
+ * The file is line based text:
+ *
+ * <pre>
+ * testcasegen-fingerprints 1
+ * typeName counter contentHash referencesHash identity
+ * </pre>
+ */
+public final class FixtureFingerprints {
+
+    static final String HEADER = "testcasegen-fingerprints 1";
+
+    private final List<Entry> entries;
+
+    private FixtureFingerprints(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return the fingerprints of the objects captured by the generator, with their current names.
+     */
+    public static FixtureFingerprints of(TestcaseGenerator ctx) {
+        final List<Entry> entries = new ArrayList<>();
+        for (Node node : compute(ctx).values()) {
+            entries.add(node.toEntry());
+        }
+        return new FixtureFingerprints(entries);
+    }
+
+    public static FixtureFingerprints read(Path file) throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IOException(file + " is not a testcasegen fingerprint file");
+        }
+        final List<Entry> entries = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            final String[] fields = line.split(" ", 5);
+            if (fields.length != 5) {
+                throw new IOException("Unexpected line in " + file + ": " + line);
+            }
+            entries.add(new Entry(fields[0], Integer.parseInt(fields[1]), fields[2], fields[3], fields[4]));
+        }
+        return new FixtureFingerprints(entries);
+    }
+
+    public void write(Path file) throws IOException {
+        final List<String> lines = new ArrayList<>(entries.size() + 1);
+        lines.add(HEADER);
+        for (Entry entry : entries) {
+            lines.add(entry.typeName + ' ' + entry.counter + ' ' + entry.hash + ' ' + entry.references + ' ' + entry.identity);
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Renumbers the objects captured by the generator, so the objects which are matched with an object of this
+     * previous capture get the same getter name, and the new ones get names which were not used before.
+     *
+     * @return the number of the added, changed, unchanged and removed objects.
+     */
+    public Changes keepNames(TestcaseGenerator ctx) {
+        final Map<IntrospectionResult, Node> current = compute(ctx);
+        final Map<String, Integer> maxCounters = new HashMap<>();
+        for (Entry entry : entries) {
+            maxCounters.merge(entry.typeName, entry.counter, Math::max);
+        }
+        final Map<IntrospectionResult, Entry> matches = new IdentityHashMap<>();
+        match(current, matches, entry -> entry.typeName + ' ' + entry.identity + ' ' + entry.hash);
+        match(current, matches, entry -> entry.typeName + ' ' + entry.hash);
+        match(current, matches, entry -> entry.typeName + ' ' + entry.identity);
+        final List<IntrospectionResult> added = new ArrayList<>();
+        for (IntrospectionResult node : current.keySet()) {
+            final Entry previous = matches.get(node);
+            if (previous != null) {
+                node.setCounter(previous.counter);
+            } else {
+                added.add(node);
+            }
+        }
+        for (IntrospectionResult node : added) {
+            node.setCounter(maxCounters.merge(node.getTypeName(), 0, (max, ignored) -> max + 1));
+        }
+        final Changes changes = new Changes();
+        changes.added = added.size();
+        changes.removed = entries.size() - matches.size();
+        for (Map.Entry<IntrospectionResult, Entry> match : matches.entrySet()) {
+            final Entry previous = match.getValue();
+            final Entry renamed = current.get(match.getKey()).toEntry();
+            if (previous.hash.equals(renamed.hash) && previous.references.equals(renamed.references)) {
+                changes.unchanged++;
+            } else {
+                changes.changed++;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Matches the nodes which are not matched yet with the unused previous entries of the same key, in the order of
+     * the getters.
+     */
+    private void match(Map<IntrospectionResult, Node> current, Map<IntrospectionResult, Entry> matches, Function<Entry, String> key) {
+        final Set<Entry> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        used.addAll(matches.values());
+        final Map<String, Deque<Entry>> candidates = new HashMap<>();
+        for (Entry entry : entries) {
+            if (!used.contains(entry)) {
+                candidates.computeIfAbsent(key.apply(entry), ignored -> new ArrayDeque<>()).add(entry);
+            }
+        }
+        for (Map.Entry<IntrospectionResult, Node> node : current.entrySet()) {
+            if (!matches.containsKey(node.getKey())) {
+                final Deque<Entry> sameKey = candidates.get(key.apply(node.getValue().toEntry()));
+                final Entry previous = sameKey != null ? sameKey.poll() : null;
+                if (previous != null) {
+                    matches.put(node.getKey(), previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the captured objects with their fingerprints, in the order of the generated getters.
+     */
+    private static Map<IntrospectionResult, Node> compute(TestcaseGenerator ctx) {
+        final List<IntrospectionResult> nodes = new ArrayList<>();
+        for (SourceCodeGenerator generator : ctx.getIntrospectionResults()) {
+            if (generator instanceof IntrospectionResult) {
+                nodes.add((IntrospectionResult) generator);
+            }
+        }
+        final Map<IntrospectionResult, String> identities = identify(ctx, nodes);
+        final StructuralDeduplication describer = new StructuralDeduplication(ctx);
+        final Map<IntrospectionResult, Node> result = new LinkedHashMap<>();
+        for (IntrospectionResult node : nodes) {
+            final List<Object> signature = new ArrayList<>();
+            final List<IntrospectionResult> referred = new ArrayList<>();
+            describer.describe(node, signature, referred);
+            result.put(node, new Node(node, hash(signature.toString()), referred, identities.get(node)));
+        }
+        return result;
+    }
+
+    /**
+     * Walks the graph breadth first from the root objects, so every object gets the shortest path.
+     */
+    private static Map<IntrospectionResult, String> identify(TestcaseGenerator ctx, List<IntrospectionResult> nodes) {
+        final Map<IntrospectionResult, String> identities = new IdentityHashMap<>();
+        final Deque<IntrospectionResult> queue = new ArrayDeque<>();
+        final Map<String, Integer> rootCounts = new HashMap<>();
+        for (IntrospectionResult node : nodes) {
+            final String identity = identityProperty(ctx, node);
+            if (identity != null) {
+                identities.put(node, identity);
+            }
+            if (node.isPublicFlag()) {
+                final int index = rootCounts.merge(node.getTypeName(), 1, Integer::sum) - 1;
+                identities.putIfAbsent(node, node.getTypeName() + '#' + index);
+                queue.add(node);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final IntrospectionResult node = queue.poll();
+            final String path = identities.get(node);
+            for (Map.Entry<String, Object> attribute : new TreeMap<>(node.getAttributes()).entrySet()) {
+                final Object value = attribute.getValue();
+                final String prefix = path + '.' + attribute.getKey();
+                if (value instanceof Collection) {
+                    int index = 0;
+                    for (Object element : (Collection<?>) value) {
+                        visit(ctx, element, prefix + '[' + index++ + ']', identities, queue);
+                    }
+                } else if (value instanceof Map) {
+                    int index = 0;
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        final Object key = entry.getKey();
+                        final boolean simpleKey = key instanceof String || key instanceof Number || key instanceof Enum;
+                        final String entryPath = prefix + '[' + (simpleKey ? escape(key.toString()) : "#" + index) + ']';
+                        visit(ctx, key, entryPath + ".key", identities, queue);
+                        visit(ctx, entry.getValue(), entryPath, identities, queue);
+                        index++;
+                    }
+                } else {
+                    visit(ctx, value, prefix, identities, queue);
+                }
+            }
+        }
+        final Map<String, Integer> unreachableCounts = new HashMap<>();
+        for (IntrospectionResult node : nodes) {
+            if (!identities.containsKey(node)) {
+                // only referred through a custom introspector, numbered in the order of the getters, not by the
+                // counter, which is renumbered by keepNames
+                final int index = unreachableCounts.merge(node.getTypeName(), 1, Integer::sum) - 1;
+                identities.put(node, "?" + node.getTypeName() + '#' + index);
+            }
+        }
+        return identities;
+    }
+
+    private static void visit(TestcaseGenerator ctx, Object value, String path, Map<IntrospectionResult, String> identities,
+            Deque<IntrospectionResult> queue) {
+        if (value == null) {
+            return;
+        }
+        final SourceCodeGenerator generator = ctx.introspectionStatus.get(value);
+        if (generator instanceof IntrospectionResult && !identities.containsKey(generator)) {
+            identities.put((IntrospectionResult) generator, path);
+            queue.add((IntrospectionResult) generator);
+        }
+    }
+
+    private static String identityProperty(TestcaseGenerator ctx, IntrospectionResult node) {
+        if (ctx.config.identityProperties.isEmpty()) {
+            return null;
+        }
+        for (Map.Entry<String, Object> attribute : new TreeMap<>(node.getAttributes()).entrySet()) {
+            final Object value = attribute.getValue();
+            if (value != null && ctx.config.identityProperties.contains(attribute.getKey())
+                    && (value instanceof String || value instanceof Number || value instanceof Enum || value instanceof Character)) {
+                return node.getTypeName() + '[' + attribute.getKey() + '=' + escape(value.toString()) + ']';
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the identity on a single line.
+     */
+    private static String escape(String text) {
+        final StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch < 0x20 || ch == '\\') {
+                result.append(String.format("\\u%04x", (int) ch));
+            } else {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String hash(String signature) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(signature.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        final String typeName;
+        final int counter;
+        final String hash;
+        final String references;
+        final String identity;
+
+        Entry(String typeName, int counter, String hash, String references, String identity) {
+            this.typeName = typeName;
+            this.counter = counter;
+            this.hash = hash;
+            this.references = references;
+            this.identity = identity;
+        }
+    }
+
+    /**
+     * A captured object, its entry depends on the current names of the referred objects.
+     */
+    private static final class Node {
+        final IntrospectionResult result;
+        final String hash;
+        final List<IntrospectionResult> referred;
+        final String identity;
+
+        Node(IntrospectionResult result, String hash, List<IntrospectionResult> referred, String identity) {
+            this.result = result;
+            this.hash = hash;
+            this.referred = referred;
+            this.identity = identity;
+        }
+
+        Entry toEntry() {
+            final StringBuilder names = new StringBuilder();
+            for (IntrospectionResult target : referred) {
+                names.append(target.getTypeName()).append('#').append(target.getCounter()).append(' ');
+            }
+            return new Entry(result.getTypeName(), result.getCounter(), hash, hash(names.toString()), identity);
+        }
+    }
+
+    /**
+     * The outcome of {@link FixtureFingerprints#keepNames}.
+     */
+    public static final class Changes {
+        int added;
+        int changed;
+        int unchanged;
+        int removed;
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + changed + " changed, " + unchanged + " unchanged, " + removed + " removed";
+        }
+    }
+}
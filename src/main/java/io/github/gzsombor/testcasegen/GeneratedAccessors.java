@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+/**
+ * The property table of a bean type, with accessors calling the getters directly. The implementations are generated
+ * at build time by the testcasegen-processor module for the types annotated with {@link GenerateAccessors}, and are
+ * registered as a {@link java.util.ServiceLoader service}, so {@link TestcaseGeneratorConfig} picks them up
+ * automatically. The types without generated accessors are read through reflection.
+ */
+public interface GeneratedAccessors {
+
+    Class<?> getType();
+
+    /**
+     * @return the names of the readable properties, sorted, the same way as the reflection based introspection lists
+     *         them.
+     */
+    String[] getPropertyNames();
+
+    /**
+     * @return the accessor of the property at the given index in {@link #getPropertyNames()}.
+     */
+    PropertyAccessor getAccessor(int index);
+
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.gzsombor.testcasegen.src.FixSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+
+/**
+ * Generates the test case class while walking the object graph: the getter method of an object is written as soon as
+ * every object it refers to is introspected, and after that only the expression to access the object is kept in
+ * memory, in a map which doesn't keep the written objects alive. The field declarations are collected in a temporary
+ * file, and appended to the end of the class on {@link #close()}.
+ *
+ * The graph is walked depth first, like without capture limits, so the depth limit of the configuration is counted
+ * along the walk, and an object which is left out on a long path is captured if it is reached later on a shorter one.
+ * The node limit applies to all the objects written by the writer, and the timeout to each {@link #introspect} call.
+ * The parallel capture and the structural deduplication are not used, and the collections and simple values are not
+ * memoized, they are resolved again when their owner is written.
+ */
+public class IncrementalTestcaseWriter implements Closeable {
+
+    private final TestcaseGenerator context;
+    private final String className;
+    private final TestcaseSourceFormatter.CountingWriter counter;
+    private final Writer out;
+    private final Path fieldsFile;
+    private final BufferedWriter fields;
+    private int capturedObjects;
+
+    public IncrementalTestcaseWriter(TestcaseGeneratorConfig config, Writer out, String className) throws IOException {
+        this.context = config.startIntrospect();
+        this.context.emittedObjects = new WeakObjectMap<>(!context.config.deduplicateEqualObjects);
+        this.context.memoizeResolvedValues = false;
+        this.className = className;
+        this.counter = context.config.captureListener != CaptureListener.NONE ? new TestcaseSourceFormatter.CountingWriter(out) : null;
+        this.out = counter != null ? counter : out;
+        this.fieldsFile = Files.createTempFile("testcasegen", ".fields");
+        this.fields = Files.newBufferedWriter(fieldsFile, StandardCharsets.UTF_8);
+        this.out.write("public class " + className + " { \n");
+    }
+
+    /**
+     * Captures the objects, and writes the getters of the newly found ones. The objects are numbered in the same order
+     * as by {@link TestcaseGenerator#introspect(Object...)}, so the getters are the same as the ones written by the
+     * {@link TestcaseSourceFormatter}, only their order differs. A root which is already written as a private getter by
+     * an earlier call gets a public getter which delegates to it.
+     *
+     * @return the expression which returns each root in the written class, like {@code getOrder0()}, or null for the
+     *         roots which are not captured.
+     */
+    public List<String> introspect(Object... roots) throws ReflectionException, IOException {
+        final CaptureSettings config = context.config;
+        final long deadline = config.captureTimeout != null ? System.nanoTime() + config.captureTimeout.toNanos() : 0;
+        final Map<Object, Boolean> rootSet = config.deduplicateEqualObjects ? new HashMap<>() : new IdentityHashMap<>();
+        final Deque<Visit> visits = new ArrayDeque<>();
+        for (Object root : roots) {
+            if (root != null) {
+                rootSet.put(root, Boolean.TRUE);
+                visits.push(new Visit(root, 0, null));
+            }
+        }
+        while (!visits.isEmpty()) {
+            final Visit visit = visits.pop();
+            final Pending node = capture(visit, deadline, rootSet);
+            if (node != null) {
+                final List<Object> referred = node.generator.getReferredObjects();
+                node.waiting = referred.size();
+                for (Object obj : referred) {
+                    visits.push(new Visit(obj, visit.depth + 1, node));
+                }
+                if (node.waiting == 0) {
+                    emit(node);
+                }
+            }
+            // the name of the visited object is known, so its referrer can be written, if it was the last one
+            for (Pending parent = visit.parent; parent != null && --parent.waiting == 0; parent = parent.parent) {
+                emit(parent);
+            }
+        }
+        final List<String> accesses = new ArrayList<>(roots.length);
+        for (Object root : roots) {
+            accesses.add(root != null ? writeRootGetter(context.emittedObjects.get(root)) : null);
+        }
+        // every getter which refers to the left out objects is written
+        context.truncatedObjects.clear();
+        out.flush();
+        return accesses;
+    }
+
+    /**
+     * Introspects the object if it is not yet known, and the capture limits allow it.
+     *
+     * @return the object to write when its referred objects are visited, or null if it is already known, not
+     *         captured, or written immediately as it has no getter.
+     */
+    private Pending capture(Visit visit, long deadline, Map<Object, Boolean> roots) throws ReflectionException {
+        final Object obj = visit.obj;
+        if (obj == null || context.introspectionStatus.containsKey(obj) || context.emittedObjects.containsKey(obj)
+                || context.getPlan(obj.getClass()) == null) {
+            return null;
+        }
+        final CaptureSettings config = context.config;
+        if (visit.depth > config.maxDepth) {
+            context.truncatedObjects.put(obj, "not captured, the depth limit of " + config.maxDepth + " is reached");
+            return null;
+        } else if (capturedObjects >= config.maxNodes) {
+            context.truncatedObjects.put(obj, "not captured, the limit of " + config.maxNodes + " objects is reached");
+            return null;
+        } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            context.truncatedObjects.put(obj, "not captured, the capture timeout of " + config.captureTimeout + " is reached");
+            return null;
+        }
+        final SourceCodeGenerator result = context.capture(obj);
+        if (result == null) {
+            return null;
+        }
+        capturedObjects++;
+        context.truncatedObjects.remove(obj);
+        result.setPublicFlag(roots.containsKey(obj));
+        if (!result.isHasInitializer()) {
+            context.emittedObjects.put(obj, new Emitted(result));
+            return null;
+        }
+        context.introspectionStatus.put(obj, result);
+        return new Pending(obj, result, visit.parent);
+    }
+
+    private void emit(Pending node) throws IOException {
+        node.generator.writeInitializer(context, TestcaseSourceFormatter.PADDING, out);
+        out.write('\n');
+        final String variableDeclaration = node.generator.getCacheVariableDeclaration();
+        if (variableDeclaration != null) {
+            fields.append(TestcaseSourceFormatter.PADDING).append(variableDeclaration).append(";\n");
+        }
+        context.introspectionStatus.remove(node.obj);
+        context.emittedObjects.put(node.obj, new Emitted(node.generator));
+    }
+
+    private String writeRootGetter(SourceCodeGenerator generator) throws IOException {
+        if (!(generator instanceof Emitted)) {
+            return null;
+        }
+        final Emitted emitted = (Emitted) generator;
+        final String access = emitted.getObjectAccess();
+        if (emitted.isPublicFlag() || emitted.typeName == null) {
+            return access;
+        }
+        final String name = access.substring(0, access.length() - 2) + "Root";
+        if (!emitted.rootGetterWritten) {
+            out.write(TestcaseSourceFormatter.PADDING + "public " + emitted.typeName + ' ' + name + "() {\n");
+            out.write(TestcaseSourceFormatter.PADDING + "    return " + access + ";\n");
+            out.write(TestcaseSourceFormatter.PADDING + "}\n\n");
+            emitted.rootGetterWritten = true;
+        }
+        return name + "()";
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fields.close();
+            try (BufferedReader reader = Files.newBufferedReader(fieldsFile, StandardCharsets.UTF_8)) {
+                final char[] buffer = new char[8192];
+                int length;
+                while ((length = reader.read(buffer)) >= 0) {
+                    out.write(buffer, 0, length);
+                }
+            }
+            out.write("}\n");
+            out.flush();
+            if (counter != null) {
+                context.config.captureListener.codeEmitted(className, counter.count);
+            }
+        } finally {
+            Files.deleteIfExists(fieldsFile);
+        }
+    }
+
+    /**
+     * An object to capture, and the captured object which refers to it.
+     */
+    private static final class Visit {
+        final Object obj;
+        final int depth;
+        final Pending parent;
+
+        Visit(Object obj, int depth, Pending parent) {
+            this.obj = obj;
+            this.depth = depth;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * A captured object, which is written when all of its referred objects are visited.
+     */
+    private static final class Pending {
+        final Object obj;
+        final SourceCodeGenerator generator;
+        final Pending parent;
+        int waiting;
+
+        Pending(Object obj, SourceCodeGenerator generator, Pending parent) {
+            this.obj = obj;
+            this.generator = generator;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * A written object, only its access expression and type name are kept.
+     */
+    private static final class Emitted extends FixSourceCodeGenerator {
+        final String typeName;
+        boolean rootGetterWritten;
+
+        Emitted(SourceCodeGenerator generator) {
+            super(generator.getObjectAccess(), generator.estimateAccessSize());
+            this.typeName = generator instanceof IntrospectionResult ? ((IntrospectionResult) generator).getTypeName() : null;
+            setPublicFlag(generator.isPublicFlag());
+        }
+    }
+}
@@ -15,88 +15,151 @@
  */
 package io.github.gzsombor.testcasegen;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
 
+/**
+ * Reads the properties of a type. A plan can be registered in a shared {@link TestcaseGeneratorConfig}, and used by
+ * many generators at the same time: the property layout is computed once and published through a volatile field, and
+ * the getter numbers are counted by each generator, so only the standalone {@link #introspect(Object)} calls share the
+ * counter of the plan.
+ */
 public class IntrospectionPlan implements Introspector {
 
     private final Class<?> type;
-    private int counter;
+    private final AccessorFactory accessorFactory;
+    private final GeneratedAccessors generatedAccessors;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private volatile Set<String> skippedAttributes = Collections.emptySet();
 
-    private Set<String> skippedAttributes;
+    private volatile Layout layout;
 
     public IntrospectionPlan(Class<?> type) {
+        this(type, new MethodHandleAccessorFactory());
+    }
+
+    public IntrospectionPlan(Class<?> type, AccessorFactory accessorFactory) {
+        this(type, accessorFactory, null);
+    }
+
+    /**
+     * Reads the properties through the generated accessors if they are given, or through the accessor factory
+     * otherwise.
+     */
+    public IntrospectionPlan(Class<?> type, AccessorFactory accessorFactory, GeneratedAccessors generatedAccessors) {
         this.type = type;
+        this.accessorFactory = accessorFactory;
+        this.generatedAccessors = generatedAccessors;
     }
 
-    public void addSkipAttributes(String... attributes) {
-        if (this.skippedAttributes == null) {
-            this.skippedAttributes = new HashSet<>();
-        }
-        this.skippedAttributes.addAll(Arrays.asList(attributes));
+    /**
+     * The skipped attributes are replaced with a new set, so the running captures keep reading a consistent one.
+     */
+    public synchronized void addSkipAttributes(String... attributes) {
+        final Set<String> skipped = new HashSet<>(this.skippedAttributes);
+        skipped.addAll(Arrays.asList(attributes));
+        this.skippedAttributes = Collections.unmodifiableSet(skipped);
+        this.layout = null;
+    }
+
+    Class<?> getType() {
+        return type;
     }
 
     @Override
     public SourceCodeGenerator introspect(Object obj) throws ReflectionException {
-        IntrospectionResult result = new IntrospectionResult(type, counter++);
-        Map<String, Class<?>> setters = new HashMap<>();
-        for (Method method : type.getMethods()) {
-            Class<?>[] parameterTypes = method.getParameterTypes();
-            if ((parameterTypes.length == 1) && method.getName().startsWith("set")) {
-                setters.put(method.getName().substring(3), parameterTypes[0]);
+        return introspect(obj, counter.getAndIncrement(), CaptureListener.NONE);
+    }
+
+    SourceCodeGenerator introspect(Object obj, int number, CaptureListener listener) throws ReflectionException {
+        final Layout current = getLayout();
+        IntrospectionResult result = new IntrospectionResult(type, number, current.schema);
+        if (listener == CaptureListener.NONE) {
+            for (Attribute attribute : current.attributes) {
+                result.setValue(attribute.slot, attribute.accessor.read(obj));
+            }
+        } else {
+            for (Attribute attribute : current.attributes) {
+                final long start = System.nanoTime();
+                final Object value = attribute.accessor.read(obj);
+                listener.propertyRead(type, attribute.name, System.nanoTime() - start);
+                result.setValue(attribute.slot, value);
             }
         }
-        for (Method method : type.getMethods()) {
-            if (method.getParameterTypes().length == 0 && !Void.TYPE.equals(method.getReturnType())) {
-                String propertyName = getPropertyName(method);
-                if (propertyName != null) {
-                    Class<?> setterType = setters.get(propertyName);
-                    if (setterType != null && setterType.equals(method.getReturnType())) {
-                        collectAttributeValue(result, obj, method);
-                    } else if (Collection.class.isAssignableFrom(method.getReturnType())) {
-                        collectAttributeValue(result, obj, method);
+        return result;
+    }
+
+    /**
+     * @return the properties of the type which are not skipped, with their accessors and the schema of the results,
+     *         computed on the first call.
+     */
+    private Layout getLayout() {
+        Layout result = layout;
+        if (result == null) {
+            final List<String> names = new ArrayList<>();
+            final List<Class<?>> valueTypes = new ArrayList<>();
+            final List<PropertyAccessor> accessors = new ArrayList<>();
+            final Set<String> skippedAttributes = this.skippedAttributes;
+            if (generatedAccessors != null) {
+                final String[] propertyNames = generatedAccessors.getPropertyNames();
+                for (int i = 0; i < propertyNames.length; i++) {
+                    if (!skippedAttributes.contains(propertyNames[i])) {
+                        names.add(propertyNames[i]);
+                        // the generated accessors don't tell the value types, so everything is kept boxed
+                        valueTypes.add(null);
+                        accessors.add(generatedAccessors.getAccessor(i));
+                    }
+                }
+            } else {
+                for (BeanProperty property : BeanProperty.of(type)) {
+                    if (!skippedAttributes.contains(property.getName())) {
+                        names.add(property.getName());
+                        valueTypes.add(property.getGetter().getReturnType());
+                        accessors.add(accessorFactory.createAccessor(property.getGetter()));
                     }
                 }
             }
+            final PropertySchema schema = PropertySchema.of(names, valueTypes);
+            final Attribute[] attributes = new Attribute[names.size()];
+            for (int i = 0; i < attributes.length; i++) {
+                attributes[i] = new Attribute(names.get(i), schema.getSlot(names.get(i)), accessors.get(i));
+            }
+            result = new Layout(schema, attributes);
+            layout = result;
         }
         return result;
     }
-    
-    private String getPropertyName(Method method) {
-        String name = method.getName();
-        if (name.startsWith("get")) {
-            return name.substring(3);
-        } else if (name.startsWith("is")) {
-            return name.substring(2);
-        }
-        return null;
-    }
 
-    private void collectAttributeValue(IntrospectionResult result, Object obj, Method method) {
-        if (method.getName().startsWith("get") && !Class.class.equals(method.getReturnType())) {
-            addResult(result, obj, method.getName().substring(3), method);
-        } else if (method.getName().startsWith("is") && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
-            addResult(result, obj, method.getName().substring(2), method);
+    /**
+     * The attributes with the schema of the results, replaced together when the skipped attributes change.
+     */
+    private static final class Layout {
+        final PropertySchema schema;
+        final Attribute[] attributes;
+
+        Layout(PropertySchema schema, Attribute[] attributes) {
+            this.schema = schema;
+            this.attributes = attributes;
         }
     }
 
-    void addResult(IntrospectionResult introResult, Object obj, String name, Method method) throws ReflectionException {
-        try {
-            if (skippedAttributes != null && skippedAttributes.contains(name)) {
-                return;
-            }
-            final Object result = method.invoke(obj);
-            introResult.setAttribute(name, result);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new ReflectionException(e);
+    static final class Attribute {
+        final String name;
+        final int slot;
+        final PropertyAccessor accessor;
+
+        Attribute(String name, int slot, PropertyAccessor accessor) {
+            this.name = name;
+            this.slot = slot;
+            this.accessor = accessor;
         }
     }
 
@@ -15,53 +15,213 @@
  */
 package io.github.gzsombor.testcasegen;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import io.github.gzsombor.testcasegen.src.CollectionSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator;
 import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.StringSourceCode;
 
 public class IntrospectionResult extends SourceCodeGenerator {
+    private static final int GETTER_SIZE = 30;
+    private static final int SETTER_SIZE = 8;
+
     private final Class<?> type;
-    private final int counter;
+    private final String typeName;
+    private int counter;
     private boolean useCounter = true;
 
-    private Map<String, Object> attributes = new HashMap<>();
+    /**
+     * The values by the slots of the schema; the primitive values are kept unboxed in {@link #primitives}.
+     */
+    private PropertySchema schema;
+    private Object[] values;
+    private long[] primitives;
+
+    private Map<String, String> truncatedAttributes;
 
-    private List<Object> referredObjects = new ArrayList<>();
+    private int part = -1;
 
     public IntrospectionResult(Class<?> type, int counter) {
+        this(type, counter, PropertySchema.EMPTY);
+    }
+
+    /**
+     * Creates a result with the slots of the schema, which is shared by the results of the same introspection plan.
+     */
+    IntrospectionResult(Class<?> type, int counter, PropertySchema schema) {
         this.type = type;
+        this.typeName = type.getSimpleName();
         this.counter = counter;
+        setSchema(schema);
+    }
+
+    /**
+     * Creates a result read back from a snapshot, where only the name of the type is known.
+     */
+    IntrospectionResult(String typeName, int counter) {
+        this.type = null;
+        this.typeName = typeName;
+        this.counter = counter;
+        setSchema(PropertySchema.EMPTY);
+    }
+
+    private void setSchema(PropertySchema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        this.primitives = new long[schema.getPrimitiveCount()];
     }
     
     public void setUseCounter(boolean useCounter) {
         this.useCounter = useCounter;
     }
 
+    boolean isUseCounter() {
+        return useCounter;
+    }
+
+    /**
+     * @return the introspected class, or null if the result is read from a snapshot.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return the simple name of the introspected class, as it is used in the generated code.
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public int getCounter() {
+        return counter;
+    }
+
+    void setCounter(int counter) {
+        this.counter = counter;
+    }
+
     public void setAttribute(String name, Object value) {
-        attributes.put(name, value);
-        if (!isSimple(value)) {
-            if (value instanceof Collection) {
-                referredObjects.addAll((Collection) value);
-            } else {
-                referredObjects.add(value);
+        int slot = schema.getSlot(name);
+        if (slot < 0) {
+            extendSchema(name);
+            slot = schema.getSlot(name);
+        }
+        setValue(slot, value);
+    }
+
+    /**
+     * Sets the value of a slot of the schema.
+     */
+    void setValue(int slot, Object value) {
+        final int primitiveIndex = schema.getPrimitiveIndex(slot);
+        if (primitiveIndex < 0) {
+            values[slot] = value;
+        } else if (schema.canPack(slot, value)) {
+            primitives[primitiveIndex] = schema.pack(slot, value);
+        } else {
+            throw new IllegalArgumentException("Unexpected value for the primitive " + typeName + '.' + schema.getName(slot) + ": " + value);
+        }
+    }
+
+    private Object getValue(int slot) {
+        final int primitiveIndex = schema.getPrimitiveIndex(slot);
+        return primitiveIndex < 0 ? values[slot] : schema.unpack(slot, primitives[primitiveIndex]);
+    }
+
+    /**
+     * Moves the values to a schema with the additional property, where every value is kept boxed.
+     */
+    private void extendSchema(String name) {
+        final PropertySchema extended = schema.with(name);
+        final Object[] extendedValues = new Object[extended.size()];
+        for (int slot = 0; slot < schema.size(); slot++) {
+            extendedValues[extended.getSlot(schema.getName(slot))] = getValue(slot);
+        }
+        this.schema = extended;
+        this.values = extendedValues;
+        this.primitives = new long[0];
+    }
+
+    /**
+     * Replaces the collections with more than max elements with a sample of them, and notes the truncation in the
+     * generated code.
+     */
+    void limitCollections(int max, CollectionSampling sampling) {
+        for (int slot = 0; slot < values.length; slot++) {
+            final Object value = values[slot];
+            if (value instanceof Collection && ((Collection<?>) value).size() > max) {
+                final Collection<?> collection = (Collection<?>) value;
+                final List<Object> sample = sampling.sample(collection, max);
+                values[slot] = value instanceof Set ? new LinkedHashSet<>(sample) : sample;
+                setTruncation(schema.getName(slot), "truncated to " + max + " of " + collection.size() + " elements (" + sampling + ")");
             }
         }
     }
 
+    /**
+     * @return the attributes by name, in the order of the slots. The returned map is a copy.
+     */
+    Map<String, Object> getAttributes() {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int slot = 0; slot < schema.size(); slot++) {
+            attributes.put(schema.getName(slot), getValue(slot));
+        }
+        return attributes;
+    }
+
+    /**
+     * Notes why the value of the attribute is not the original one.
+     */
+    void setTruncation(String attribute, String note) {
+        if (truncatedAttributes == null) {
+            truncatedAttributes = new HashMap<>();
+        }
+        truncatedAttributes.put(attribute, note);
+    }
+
     private boolean isSimple(Object result) {
         if (result == null) {
             return true;
         }
         Class resultType = result.getClass();
-        return (resultType.isPrimitive() || resultType.isEnum() || String.class.equals(resultType) || result instanceof Number);
+        return (resultType.isPrimitive() || resultType.isEnum() || String.class.equals(resultType) || result instanceof Number
+                || (resultType.isArray() && resultType.getComponentType().isPrimitive()));
     }
 
+    /**
+     * @return the objects referred by the attributes, computed on each call, as it is only needed once per walk.
+     */
     @Override
     public List<Object> getReferredObjects() {
+        final List<Object> referredObjects = new ArrayList<>();
+        for (Object value : values) {
+            if (!isSimple(value)) {
+                if (value instanceof Collection) {
+                    referredObjects.addAll((Collection) value);
+                } else if (value instanceof Map) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        if (entry.getKey() != null) {
+                            referredObjects.add(entry.getKey());
+                        }
+                        if (entry.getValue() != null) {
+                            referredObjects.add(entry.getValue());
+                        }
+                    }
+                } else {
+                    referredObjects.add(value);
+                }
+            }
+        }
         return referredObjects;
     }
 
@@ -71,61 +231,216 @@ public class IntrospectionResult extends SourceCodeGenerator {
     }
 
     @Override
-    public String getInitializer(TestcaseGenerator ctx, String padding) {
-        StringBuilder out = new StringBuilder();
-        final String visibility = publicFlag ? "public" : "private";
-        out.append(padding).append(visibility).append(" " + type.getSimpleName() + ' ' + getMethodName() + "() {\n");
+    public void writeInitializer(TestcaseGenerator ctx, String padding, Appendable out) throws IOException {
+        final int maxMethodSize = ctx.config.maxMethodSize;
         final String var = getCacheVariableName();
-        out.append(padding).append("    if (" + var + " == null) {\n");
-        out.append(padding).append("         this." + var + " = new " + type.getSimpleName() + "();\n");
-        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
-            Object value = entry.getValue();
+        final List<Setter> setters = getSetters(ctx, var, maxMethodSize);
+        final List<List<Setter>> chunks = splitSetters(setters, maxMethodSize);
+        final String visibility = part >= 0 ? "" : publicFlag ? "public " : "private ";
+        if (chunks.size() == 1) {
+            writeSuppressWarnings(setters, padding, out);
+        }
+        out.append(padding).append(visibility).append(typeName).append(' ');
+        writeMethodName(out);
+        out.append("() {\n");
+        out.append(padding).append("    if (").append(var).append(" == null) {\n");
+        out.append(padding).append("         this.").append(var).append(" = new ").append(typeName).append("();\n");
+        if (chunks.size() == 1) {
+            for (Setter setter : setters) {
+                setter.write(padding + "         ", var, out);
+            }
+        } else {
+            for (int i = 0; i < chunks.size(); i++) {
+                out.append(padding).append("         ").append(var).append("_init_").append(Integer.toString(i)).append("();\n");
+            }
+        }
+        out.append(padding).append("    }\n");
+        out.append(padding).append("    return ").append(var).append(";\n");
+        out.append(padding).append("}\n");
+        if (chunks.size() > 1) {
+            for (int i = 0; i < chunks.size(); i++) {
+                out.append('\n');
+                writeSuppressWarnings(chunks.get(i), padding, out);
+                out.append(padding).append("private void ").append(var).append("_init_").append(Integer.toString(i)).append("() {\n");
+                for (Setter setter : chunks.get(i)) {
+                    setter.write(padding + "    ", var, out);
+                }
+                out.append(padding).append("}\n");
+            }
+        }
+        for (Setter setter : setters) {
+            if (setter.factoryMethod != null) {
+                out.append('\n');
+                if (setter.generator instanceof MapSourceCodeGenerator) {
+                    ((MapSourceCodeGenerator) setter.generator).writeFactoryMethod(setter.factoryMethod, padding, maxMethodSize, out);
+                } else {
+                    ((CollectionSourceCodeGenerator) setter.generator).writeFactoryMethod(setter.factoryMethod, padding, maxMethodSize, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * The maps written inline are converted from a raw type to the setter parameter.
+     */
+    private static void writeSuppressWarnings(List<Setter> setters, String padding, Appendable out) throws IOException {
+        for (Setter setter : setters) {
+            if (setter.generator != null && setter.factoryMethod == null && setter.generator.isUncheckedAccess()) {
+                out.append(padding).append("@SuppressWarnings(\"unchecked\")\n");
+                return;
+            }
+        }
+    }
+
+    private List<Setter> getSetters(TestcaseGenerator ctx, String var, int maxMethodSize) {
+        final List<Setter> setters = new ArrayList<>(schema.size());
+        for (int slot = 0; slot < schema.size(); slot++) {
+            final String name = schema.getName(slot);
+            final Object value = getValue(slot);
             if (value != null) {
                 if (value.getClass().isPrimitive() || value instanceof Boolean) {
-                    callSetter(padding, out, var, entry.getKey(), value);
+                    setters.add(new Setter(name, value.toString(), null, null));
                 } else if (value instanceof String) {
-                    callSetter(padding, out, var, entry.getKey(), '"' + (((String) value).replaceAll("\\\"", "'")) + '"');
+                    setters.add(new Setter(name, null, new StringSourceCode((String) value), null));
                 } else {
                     SourceCodeGenerator codeGenerator = ctx.getSourceCodeGenerator(value);
-                    if (codeGenerator != null) {
-                        callSetter(padding, out, var, entry.getKey(), codeGenerator.getObjectAccess());
+                    final String truncation = joinTruncations(codeGenerator != null ? getTruncation(name) : ctx.getTruncation(value),
+                            codeGenerator);
+                    final String comment;
+                    if (truncation != null) {
+                        comment = name + ' ' + truncation;
+                    } else if (codeGenerator == null && value instanceof Map) {
+                        comment = "skipping setting " + name + ", a " + value.getClass().getName() + " can't be created";
+                    } else if (codeGenerator == null) {
+                        comment = "skipping setting " + name + " to " + value;
                     } else {
-                        out.append(padding).append("         // skipping setting " + entry.getKey() + " to " + value + "\n");
-                        // callSetter(padding, out, var, entry.getKey(), "/* ?
-                        // */" + value);
+                        comment = null;
                     }
+                    final Setter setter = new Setter(name, null, codeGenerator, comment);
+                    if ((codeGenerator instanceof CollectionSourceCodeGenerator || codeGenerator instanceof MapSourceCodeGenerator)
+                            && setter.size > maxMethodSize / 2) {
+                        setter.factoryMethod = var + '_' + name;
+                        setter.size = SETTER_SIZE + 4;
+                    }
+                    setters.add(setter);
                 }
             }
         }
-        out.append(padding).append("    }\n");
-        out.append(padding).append("    return " + getCacheVariableName() + ";\n");
-        out.append(padding).append("}\n");
-        return out.toString();
+        return setters;
+    }
+
+    private static List<List<Setter>> splitSetters(List<Setter> setters, int maxMethodSize) {
+        final List<List<Setter>> chunks = new ArrayList<>();
+        List<Setter> chunk = new ArrayList<>();
+        int chunkSize = GETTER_SIZE;
+        for (Setter setter : setters) {
+            if (chunkSize + setter.size > maxMethodSize && !chunk.isEmpty()) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkSize = GETTER_SIZE;
+            }
+            chunk.add(setter);
+            chunkSize += setter.size;
+        }
+        chunks.add(chunk);
+        return chunks;
+    }
+
+    String getTruncation(String attribute) {
+        return truncatedAttributes != null ? truncatedAttributes.get(attribute) : null;
     }
 
     /**
-     * @param padding
-     * @param out
-     * @param var
-     * @param entry
-     * @param value
+     * @return the note of the attribute, followed by the elements of its collection which are left out by a capture
+     *         limit, or null if nothing is left out.
      */
-    private void callSetter(String padding, StringBuilder out, final String var, String key, Object value) {
-        out.append(padding).append("         this." + var + ".set" + key + "(").append(value).append(");\n");
+    static String joinTruncations(String truncation, SourceCodeGenerator generator) {
+        final String elements = generator instanceof CollectionSourceCodeGenerator ? ((CollectionSourceCodeGenerator) generator).getTruncation()
+                : null;
+        if (elements == null) {
+            return truncation;
+        }
+        return truncation != null ? truncation + ", " + elements : elements;
+    }
+
+    @Override
+    public int estimateInitializerSize() {
+        int size = GETTER_SIZE;
+        for (int slot = 0; slot < schema.size(); slot++) {
+            final Object value = getValue(slot);
+            if (value instanceof Collection) {
+                size += SETTER_SIZE + 16 + 10 * ((Collection<?>) value).size();
+            } else if (value instanceof Map) {
+                size += SETTER_SIZE + 16 + 20 * ((Map<?, ?>) value).size();
+            } else if (value != null) {
+                size += SETTER_SIZE + 6;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int estimateAccessSize() {
+        return part >= 0 ? 10 : 4;
+    }
+
+    /**
+     * Places the getter in the given part class of a split fixture, or in the main class if the part is negative.
+     */
+    void setPart(int part) {
+        this.part = part;
+    }
+
+    /**
+     * One setter call of the initializer, with an optional comment before it.
+     */
+    private static final class Setter {
+        final String name;
+        final String literal;
+        final SourceCodeGenerator generator;
+        final String comment;
+        String factoryMethod;
+        int size;
+
+        Setter(String name, String literal, SourceCodeGenerator generator, String comment) {
+            this.name = name;
+            this.literal = literal;
+            this.generator = generator;
+            this.comment = comment;
+            this.size = literal != null ? SETTER_SIZE + 3 : generator != null ? SETTER_SIZE + generator.estimateAccessSize() : 0;
+        }
+
+        void write(String indent, String var, Appendable out) throws IOException {
+            if (comment != null) {
+                out.append(indent).append("// ").append(comment).append('\n');
+            }
+            if (literal == null && generator == null) {
+                return;
+            }
+            out.append(indent).append("this.").append(var).append(".set").append(name).append('(');
+            if (literal != null) {
+                out.append(literal);
+            } else if (factoryMethod != null) {
+                out.append(factoryMethod).append("()");
+            } else {
+                generator.writeObjectAccess(out);
+            }
+            out.append(");\n");
+        }
     }
 
     @Override
     public String getCacheVariableDeclaration() {
-        return "private " + type.getSimpleName() + " " + getCacheVariableName();
+        return "private " + typeName + " " + getCacheVariableName();
     }
 
     public String getCacheVariableName() {
-        return toVariableName(type.getSimpleName()) + (useCounter ? counter : "");
+        return toVariableName(typeName) + (useCounter ? counter : "");
     }
 
     @Override
     public String getOrdering() {
-        return type.getSimpleName() + counter;
+        return typeName + counter;
     }
 
     private static String toVariableName(String className) {
@@ -133,11 +448,22 @@ public class IntrospectionResult extends SourceCodeGenerator {
     }
 
     public String getMethodName() {
-        return "get" + type.getSimpleName() + (useCounter ? counter : "");
+        return "get" + typeName + (useCounter ? counter : "");
+    }
+
+    private void writeMethodName(Appendable out) throws IOException {
+        out.append("get").append(typeName);
+        if (useCounter) {
+            out.append(Integer.toString(counter));
+        }
     }
 
     @Override
-    public String getObjectAccess() {
-        return getMethodName() + "()";
+    public void writeObjectAccess(Appendable out) throws IOException {
+        if (part >= 0) {
+            out.append(TestcaseSourceFormatter.PART_FIELD).append(Integer.toString(part)).append('.');
+        }
+        writeMethodName(out);
+        out.append("()");
     }
 }
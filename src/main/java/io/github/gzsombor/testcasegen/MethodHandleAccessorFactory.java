@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Reads the properties through a {@link Function} spun by the {@link LambdaMetafactory}, so the getter call can be
+ * inlined by the JIT. If the getter's class is not visible from this library's class loader, a plain
+ * {@link MethodHandle} is used, and if the getter is not accessible at all, it falls back to the
+ * {@link ReflectionAccessorFactory}. The accessors are cached per declaring class.
+ *
+ * The exceptions thrown by the getters are wrapped into a {@link ReflectionException}, the errors are thrown as they
+ * are.
+ */
+public class MethodHandleAccessorFactory implements AccessorFactory {
+
+    private final AccessorFactory fallback = new ReflectionAccessorFactory();
+
+    private final ClassValue<ConcurrentMap<Method, PropertyAccessor>> accessors = new ClassValue<ConcurrentMap<Method, PropertyAccessor>>() {
+        @Override
+        protected ConcurrentMap<Method, PropertyAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    @Override
+    public PropertyAccessor createAccessor(Method getter) {
+        return accessors.get(getter.getDeclaringClass()).computeIfAbsent(getter, this::build);
+    }
+
+    private PropertyAccessor build(Method getter) {
+        final Class<?> declaringClass = getter.getDeclaringClass();
+        if (!Modifier.isPublic(declaringClass.getModifiers()) || !Modifier.isPublic(getter.getModifiers())) {
+            return fallback.createAccessor(getter);
+        }
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle handle;
+        try {
+            handle = lookup.unreflect(getter);
+        } catch (IllegalAccessException e) {
+            return fallback.createAccessor(getter);
+        }
+        if (isVisible(declaringClass) && isVisible(getter.getReturnType())) {
+            try {
+                return new FunctionAccessor(spinFunction(lookup, handle));
+            } catch (LambdaConversionException | RuntimeException | LinkageError e) {
+                // the method handle below still works, even if the lambda can't be spun
+            }
+        }
+        return new HandleAccessor(handle.asType(MethodType.methodType(Object.class, Object.class)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> spinFunction(MethodHandles.Lookup lookup, MethodHandle handle) throws LambdaConversionException {
+        final CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+        try {
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * Calls the getter through the spun function.
+     */
+    static final class FunctionAccessor implements PropertyAccessor {
+        private final Function<Object, Object> function;
+
+        FunctionAccessor(Function<Object, Object> function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object read(Object bean) {
+            try {
+                return function.apply(bean);
+            } catch (RuntimeException e) {
+                throw new ReflectionException(e);
+            }
+        }
+    }
+
+    /**
+     * Calls the getter through a method handle of {@code (Object)Object} type.
+     */
+    static final class HandleAccessor implements PropertyAccessor {
+        private final MethodHandle handle;
+
+        HandleAccessor(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object read(Object bean) {
+            try {
+                return handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ReflectionException(e);
+            }
+        }
+    }
+
+    /**
+     * The spun class is defined in this library's class loader, so it can only link against the classes visible
+     * from here.
+     */
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        final ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, MethodHandleAccessorFactory.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The property slots of the captured objects of a type. The objects only keep an array of the values, indexed by the
+ * slot, and the primitive values unboxed in a {@code long} array, so the property names and the map entries are not
+ * repeated for every object.
+ *
+ * The slots are sorted by the property names, so the layout, and the order of the setters in the generated code does
+ * not depend on the order the properties are found in, or on the hash codes of the names.
+ */
+final class PropertySchema {
+
+    static final PropertySchema EMPTY = new PropertySchema(new String[0], new Class<?>[0]);
+
+    /**
+     * The number of extended schemas kept, all of them are reachable from {@link #EMPTY}, so they are never freed.
+     */
+    static final int MAX_EXTENSIONS = 10_000;
+
+    private static final AtomicInteger EXTENSIONS = new AtomicInteger();
+
+    private final String[] names;
+    private final Map<String, Integer> slots;
+    private final Class<?>[] primitiveTypes;
+    private final int[] primitiveIndexes;
+    private final int primitiveCount;
+    private final Map<String, PropertySchema> extensions = new ConcurrentHashMap<>();
+
+    private PropertySchema(String[] names, Class<?>[] valueTypes) {
+        final Map<String, Integer> inserted = new TreeMap<>();
+        for (int i = 0; i < names.length; i++) {
+            inserted.put(names[i], i);
+        }
+        this.names = new String[names.length];
+        this.slots = new HashMap<>();
+        this.primitiveTypes = new Class<?>[names.length];
+        this.primitiveIndexes = new int[names.length];
+        int slot = 0;
+        int primitives = 0;
+        for (Map.Entry<String, Integer> entry : inserted.entrySet()) {
+            final Class<?> valueType = valueTypes[entry.getValue()];
+            this.names[slot] = entry.getKey();
+            this.slots.put(entry.getKey(), slot);
+            if (valueType != null && valueType.isPrimitive()) {
+                this.primitiveTypes[slot] = valueType;
+                this.primitiveIndexes[slot] = primitives++;
+            } else {
+                this.primitiveIndexes[slot] = -1;
+            }
+            slot++;
+        }
+        this.primitiveCount = primitives;
+    }
+
+    /**
+     * @param valueTypes
+     *            the declared types of the properties, the primitive ones are stored unboxed, null if unknown.
+     */
+    static PropertySchema of(List<String> names, List<Class<?>> valueTypes) {
+        return new PropertySchema(names.toArray(new String[names.size()]), valueTypes.toArray(new Class<?>[valueTypes.size()]));
+    }
+
+    /**
+     * @return a schema with an additional property, for the objects which are filled attribute by attribute. The
+     *         extended schemas are kept, so the objects filled in the same order share them - up to
+     *         {@link #MAX_EXTENSIONS}, the later ones are created for every object. The values of the extended schemas
+     *         are not stored as primitives.
+     */
+    PropertySchema with(String name) {
+        final PropertySchema extension = extensions.get(name);
+        if (extension != null) {
+            return extension;
+        }
+        if (EXTENSIONS.get() >= MAX_EXTENSIONS) {
+            return extend(name);
+        }
+        return extensions.computeIfAbsent(name, key -> {
+            EXTENSIONS.incrementAndGet();
+            return extend(key);
+        });
+    }
+
+    private PropertySchema extend(String name) {
+        final String[] extendedNames = Arrays.copyOf(names, names.length + 1);
+        extendedNames[names.length] = name;
+        return new PropertySchema(extendedNames, new Class<?>[extendedNames.length]);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * @return the slot of the property, or -1 if the schema does not have it.
+     */
+    int getSlot(String name) {
+        final Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    int getPrimitiveCount() {
+        return primitiveCount;
+    }
+
+    /**
+     * @return the index of the slot in the primitive values, or -1 if the values of the slot are not primitive.
+     */
+    int getPrimitiveIndex(int slot) {
+        return primitiveIndexes[slot];
+    }
+
+    /**
+     * @return true if the value is a boxed value of the primitive type of the slot.
+     */
+    boolean canPack(int slot, Object value) {
+        final Class<?> type = primitiveTypes[slot];
+        if (type == null || value == null) {
+            return false;
+        }
+        final Class<?> valueClass = value.getClass();
+        if (type == int.class) {
+            return valueClass == Integer.class;
+        } else if (type == long.class) {
+            return valueClass == Long.class;
+        } else if (type == boolean.class) {
+            return valueClass == Boolean.class;
+        } else if (type == double.class) {
+            return valueClass == Double.class;
+        } else if (type == char.class) {
+            return valueClass == Character.class;
+        } else if (type == byte.class) {
+            return valueClass == Byte.class;
+        } else if (type == short.class) {
+            return valueClass == Short.class;
+        } else if (type == float.class) {
+            return valueClass == Float.class;
+        }
+        return false;
+    }
+
+    long pack(int slot, Object value) {
+        final Class<?> type = primitiveTypes[slot];
+        if (type == boolean.class) {
+            return ((Boolean) value) ? 1 : 0;
+        } else if (type == char.class) {
+            return (Character) value;
+        } else if (type == float.class) {
+            return Float.floatToRawIntBits((Float) value);
+        } else if (type == double.class) {
+            return Double.doubleToRawLongBits((Double) value);
+        }
+        return ((Number) value).longValue();
+    }
+
+    Object unpack(int slot, long value) {
+        final Class<?> type = primitiveTypes[slot];
+        if (type == boolean.class) {
+            return value != 0;
+        } else if (type == char.class) {
+            return (char) value;
+        } else if (type == byte.class) {
+            return (byte) value;
+        } else if (type == short.class) {
+            return (short) value;
+        } else if (type == int.class) {
+            return (int) value;
+        } else if (type == float.class) {
+            return Float.intBitsToFloat((int) value);
+        } else if (type == double.class) {
+            return Double.longBitsToDouble(value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads the properties with {@link Method#invoke(Object, Object...)}. The exceptions thrown by the getters are wrapped
+ * into a {@link ReflectionException}, the errors are thrown as they are.
+ */
+public class ReflectionAccessorFactory implements AccessorFactory {
+
+    @Override
+    public PropertyAccessor createAccessor(Method getter) {
+        if (!Modifier.isPublic(getter.getDeclaringClass().getModifiers())) {
+            try {
+                getter.setAccessible(true);
+            } catch (RuntimeException e) {
+                // not allowed to open it, the invocation will report the access problem
+            }
+        }
+        return bean -> {
+            try {
+                return getter.invoke(bean);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new ReflectionException(e);
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new ReflectionException(e);
+            }
+        };
+    }
+
+}
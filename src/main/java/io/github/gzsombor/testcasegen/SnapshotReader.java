@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import io.github.gzsombor.testcasegen.src.FixSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+
+/**
+ * Reads back a snapshot written by the {@link SnapshotWriter} into a {@link TestcaseGenerator}, which can be passed to
+ * the {@link TestcaseSourceFormatter}. The captured classes don't need to be on the class path, the generated code
+ * is the same as the one generated from the original generator.
+ */
+public class SnapshotReader {
+
+    private final TestcaseGeneratorConfig config;
+    private final List<String> strings = new ArrayList<>();
+    private final List<String> types = new ArrayList<>();
+    private ByteBuffer in;
+
+    public SnapshotReader(TestcaseGeneratorConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Reads the snapshot from a memory mapped file.
+     */
+    public TestcaseGenerator read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public TestcaseGenerator read(ByteBuffer buffer) throws IOException {
+        this.in = buffer;
+        strings.clear();
+        types.clear();
+        try {
+            if (in.remaining() < 6 || in.getInt() != SnapshotWriter.MAGIC) {
+                throw new IOException("Not a testcasegen snapshot");
+            }
+            final short version = in.getShort();
+            if (version < 1 || version > SnapshotWriter.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ", expected at most " + SnapshotWriter.VERSION);
+            }
+            final int nodeCount = readNumber();
+            final List<IntrospectionResult> nodes = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                final IntrospectionResult node = new IntrospectionResult(readType(), readNumber());
+                final int flags = in.get();
+                node.setPublicFlag((flags & SnapshotWriter.FLAG_PUBLIC) != 0);
+                node.setUseCounter((flags & SnapshotWriter.FLAG_USE_COUNTER) != 0);
+                nodes.add(node);
+            }
+            final TestcaseGenerator ctx = new TestcaseGenerator(config);
+            for (IntrospectionResult node : nodes) {
+                readBody(node, nodes, ctx);
+                ctx.introspectionStatus.put(node, node);
+            }
+            if (version >= 3) {
+                final int typeCount = readNumber();
+                for (int i = 0; i < typeCount; i++) {
+                    ctx.snapshotTypes.add(readString());
+                }
+            }
+            return ctx;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt testcasegen snapshot", e);
+        }
+    }
+
+    private void readBody(IntrospectionResult node, List<IntrospectionResult> nodes, TestcaseGenerator ctx) throws IOException {
+        final int attributeCount = readNumber();
+        for (int i = 0; i < attributeCount; i++) {
+            final String name = readString();
+            node.setAttribute(name, readValue(nodes, ctx));
+        }
+        final int noteCount = readNumber();
+        for (int i = 0; i < noteCount; i++) {
+            node.setTruncation(readString(), readString());
+        }
+    }
+
+    private Object readValue(List<IntrospectionResult> nodes, TestcaseGenerator ctx) throws IOException {
+        final byte tag = in.get();
+        switch (tag) {
+        case SnapshotWriter.LITERAL:
+            // written the same way, and with the same estimated size as a literal
+            return new FixSourceCodeGenerator(readString(), 3);
+        case SnapshotWriter.STRING:
+            return readString();
+        case SnapshotWriter.NODE:
+            return nodes.get(readNumber());
+        case SnapshotWriter.FIXED:
+            return new FixSourceCodeGenerator(readString(), readNumber());
+        case SnapshotWriter.COLLECTION: {
+            final boolean set = in.get() != 0;
+            final int count = readNumber();
+            final Collection<Object> collection = set ? new LinkedHashSet<>() : new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                collection.add(readValue(nodes, ctx));
+            }
+            return collection;
+        }
+        case SnapshotWriter.MAP: {
+            final String mapType = readString();
+            final int count = readNumber();
+            final List<SourceCodeGenerator> keys = new ArrayList<>(count);
+            final List<SourceCodeGenerator> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keys.add(ctx.getSourceCodeGenerator(readValue(nodes, ctx)));
+                values.add(ctx.getSourceCodeGenerator(readValue(nodes, ctx)));
+            }
+            // the entries are read back as generators, which can't be put into a sorted map, so the generator is kept
+            return new MapSourceCodeGenerator(mapType, keys, values);
+        }
+        case SnapshotWriter.SKIPPED:
+            return new Skipped(readString());
+        case SnapshotWriter.TRUNCATED: {
+            final Skipped value = new Skipped(null);
+            ctx.truncatedObjects.put(value, readString());
+            return value;
+        }
+        default:
+            throw new IOException("Unknown value tag " + tag + " at " + (in.position() - 1));
+        }
+    }
+
+    private String readType() throws IOException {
+        final int id = readNumber();
+        if (id == types.size()) {
+            // the class name is only kept for the readers of the format
+            readString();
+            types.add(readString());
+        }
+        return types.get(id);
+    }
+
+    private String readString() throws IOException {
+        final int id = readNumber();
+        if (id == strings.size()) {
+            final int length = readNumber();
+            if (length < 0 || length > in.remaining()) {
+                throw new IOException("String of " + length + " bytes at " + in.position() + ", only " + in.remaining()
+                        + " bytes are left");
+            }
+            final String value;
+            if (in.hasArray()) {
+                value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            } else {
+                final byte[] bytes = new byte[length];
+                in.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            strings.add(value);
+        }
+        return strings.get(id);
+    }
+
+    private int readNumber() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number at " + in.position());
+    }
+
+    /**
+     * A property value without a generator, only its description is kept.
+     */
+    private static final class Skipped {
+        private final String text;
+
+        Skipped(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+
+/**
+ * Writes the captured objects of a {@link TestcaseGenerator} into a compact binary snapshot, so the code can be
+ * generated later, in a different JVM, with the {@link SnapshotReader}. Only the information needed to generate the
+ * code is kept: the type and the counter of each object, and for each property either a literal, a reference to an
+ * other captured object, the rendered expression of a simple value, or a collection of these.
+ *
+ * The format, all numbers are unsigned variable length integers unless noted:
+ *
+ * <pre>
+ * snapshot   = magic:int32 version:int16 nodeCount header{nodeCount} body{nodeCount} typeCount string:className{typeCount}
+ * header     = type counter flags:byte
+ * body       = attributeCount (string:name value){attributeCount} noteCount (string:attribute string:note){noteCount}
+ * type       = id [string:className string:simpleName]     - the names follow when the id is seen first
+ * string     = id [length utf8{length}]                     - the bytes follow when the id is seen first
+ * value      = LITERAL string | STRING string | NODE index | FIXED string:expression accessSize
+ *            | COLLECTION isSet:byte count value{count} | SKIPPED string:text | TRUNCATED string:reason
+ *            | MAP string:mapType count (value:key value:value){count}
+ * </pre>
+ *
+ * The maps are written since version 2, and the canonical names of the classes referenced by the generated code since
+ * version 3, the readers accept the earlier versions.
+ */
+public class SnapshotWriter {
+
+    static final int MAGIC = 0x54434753;
+    static final short VERSION = 3;
+
+    static final byte LITERAL = 0;
+    static final byte STRING = 1;
+    static final byte NODE = 2;
+    static final byte FIXED = 3;
+    static final byte COLLECTION = 4;
+    static final byte SKIPPED = 5;
+    static final byte TRUNCATED = 6;
+    static final byte MAP = 7;
+
+    static final int FLAG_PUBLIC = 1;
+    static final int FLAG_USE_COUNTER = 2;
+
+    private final TestcaseGenerator ctx;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<String, Integer> types = new HashMap<>();
+    private final Map<SourceCodeGenerator, Integer> nodeIndexes = new IdentityHashMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final StringBuilder expression = new StringBuilder();
+    private WritableByteChannel out;
+
+    public SnapshotWriter(TestcaseGenerator ctx) {
+        this.ctx = ctx;
+    }
+
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel);
+        }
+    }
+
+    /**
+     * Writes the snapshot to the channel, and leaves it open. The objects are written in the order of the generated
+     * getters, so the same capture gives the same snapshot.
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        this.out = channel;
+        // every snapshot is read on its own, so the strings and types are written again
+        strings.clear();
+        types.clear();
+        nodeIndexes.clear();
+        final List<IntrospectionResult> nodes = new ArrayList<>();
+        for (SourceCodeGenerator generator : ctx.getIntrospectionResults()) {
+            if (generator instanceof IntrospectionResult) {
+                nodeIndexes.put(generator, nodes.size());
+                nodes.add((IntrospectionResult) generator);
+            }
+        }
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        writeNumber(nodes.size());
+        for (IntrospectionResult node : nodes) {
+            writeType(node);
+            writeNumber(node.getCounter());
+            ensure(1);
+            buffer.put((byte) ((node.isPublicFlag() ? FLAG_PUBLIC : 0) | (node.isUseCounter() ? FLAG_USE_COUNTER : 0)));
+        }
+        for (IntrospectionResult node : nodes) {
+            writeBody(node);
+        }
+        final Set<String> referencedTypes = ctx.getReferencedTypes();
+        writeNumber(referencedTypes.size());
+        for (String type : referencedTypes) {
+            writeString(type);
+        }
+        flush();
+    }
+
+    private void writeBody(IntrospectionResult node) throws IOException {
+        final List<Map.Entry<String, Object>> attributes = new ArrayList<>();
+        final List<String> notes = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : node.getAttributes().entrySet()) {
+            if (entry.getValue() != null) {
+                attributes.add(entry);
+            }
+            final String note = node.getTruncation(entry.getKey());
+            if (note != null) {
+                notes.add(entry.getKey());
+                notes.add(note);
+            }
+        }
+        writeNumber(attributes.size());
+        for (Map.Entry<String, Object> entry : attributes) {
+            writeString(entry.getKey());
+            final Object value = entry.getValue();
+            if (value.getClass().isPrimitive() || value instanceof Boolean) {
+                writeTag(LITERAL);
+                writeString(value.toString());
+            } else if (value instanceof String) {
+                writeTag(STRING);
+                writeString((String) value);
+            } else {
+                final SourceCodeGenerator generator = ctx.getSourceCodeGenerator(value);
+                if (generator != null) {
+                    writeValue(value, generator);
+                } else {
+                    final String truncation = ctx.getTruncation(value);
+                    if (truncation != null) {
+                        writeTag(TRUNCATED);
+                        writeString(truncation);
+                    } else {
+                        writeTag(SKIPPED);
+                        writeString(value.toString());
+                    }
+                }
+            }
+        }
+        writeNumber(notes.size() / 2);
+        for (String note : notes) {
+            writeString(note);
+        }
+    }
+
+    /**
+     * Writes a value which has a generator, the elements of the collections are written the same way. The elements
+     * without a generator are left out of the generated code, they are written as skipped or truncated values, so
+     * the note about the truncated elements is the same.
+     */
+    private void writeValue(Object value, SourceCodeGenerator generator) throws IOException {
+        final Integer index = nodeIndexes.get(generator);
+        if (index != null) {
+            writeTag(NODE);
+            writeNumber(index);
+        } else if (value instanceof String) {
+            writeTag(STRING);
+            writeString((String) value);
+        } else if (value instanceof Collection) {
+            final Collection<?> elements = (Collection<?>) value;
+            writeTag(COLLECTION);
+            ensure(1);
+            buffer.put((byte) (value instanceof Set ? 1 : 0));
+            writeNumber(elements.size());
+            for (Object element : elements) {
+                final SourceCodeGenerator elementGenerator = ctx.getSourceCodeGenerator(element);
+                final String truncation = ctx.getTruncation(element);
+                if (elementGenerator != null) {
+                    writeValue(element, elementGenerator);
+                } else if (truncation != null) {
+                    writeTag(TRUNCATED);
+                    writeString(truncation);
+                } else {
+                    writeTag(SKIPPED);
+                    writeString(String.valueOf(element));
+                }
+            }
+        } else if (value instanceof Map && generator instanceof MapSourceCodeGenerator) {
+            final List<Object> entries = new ArrayList<>();
+            final List<SourceCodeGenerator> generators = new ArrayList<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                final SourceCodeGenerator key = generatorOf(entry.getKey());
+                final SourceCodeGenerator element = generatorOf(entry.getValue());
+                if (key != null && element != null) {
+                    entries.add(entry.getKey());
+                    entries.add(entry.getValue());
+                    generators.add(key);
+                    generators.add(element);
+                }
+            }
+            writeTag(MAP);
+            writeString(((MapSourceCodeGenerator) generator).getMapType());
+            writeNumber(entries.size() / 2);
+            for (int i = 0; i < entries.size(); i++) {
+                writeValue(entries.get(i), generators.get(i));
+            }
+        } else {
+            expression.setLength(0);
+            generator.writeObjectAccess(expression);
+            writeTag(FIXED);
+            writeString(expression.toString());
+            writeNumber(generator.estimateAccessSize());
+        }
+    }
+
+    private SourceCodeGenerator generatorOf(Object value) {
+        return value != null ? ctx.getSourceCodeGenerator(value) : MapSourceCodeGenerator.NULL;
+    }
+
+    private void writeType(IntrospectionResult node) throws IOException {
+        final String className = node.getType() != null ? node.getType().getName() : node.getTypeName();
+        final Integer id = types.get(className);
+        if (id != null) {
+            writeNumber(id);
+        } else {
+            types.put(className, types.size());
+            writeNumber(types.size() - 1);
+            writeString(className);
+            writeString(node.getTypeName());
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        final Integer id = strings.get(value);
+        if (id != null) {
+            writeNumber(id);
+            return;
+        }
+        strings.put(value, strings.size());
+        writeNumber(strings.size() - 1);
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeNumber(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            final int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void writeTag(byte tag) throws IOException {
+        ensure(1);
+        buffer.put(tag);
+    }
+
+    private void writeNumber(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator;
+import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
+
+/**
+ * Merges the captured objects which would generate the same code - the same type, the same simple values, and
+ * references to objects which are merged themselves - so only one getter is generated for them.
+ *
+ * The equivalence is computed by partition refinement, which handles the cycles: the objects are first grouped by
+ * their own values, ignoring the referenced objects, then the groups are split by the groups of the referenced
+ * objects, until no group is split any more. The elements of a set, and the keys of a map are never merged with each
+ * other, as the re-created set would lose an element: such elements are moved into groups of their own, and the groups
+ * are refined again. The root objects keep their getters, the others are replaced by the representative of their
+ * group in the introspection status, so every reference to them is written as the representative's getter.
+ */
+final class StructuralDeduplication {
+
+    private final TestcaseGenerator ctx;
+    private final List<IntrospectionResult> nodes = new ArrayList<>();
+    private final Map<IntrospectionResult, Integer> indexes = new IdentityHashMap<>();
+    private final List<int[]> children = new ArrayList<>();
+    /** The captured elements of each set, and the captured keys of each map. */
+    private final List<List<IntrospectionResult>> distinctElements = new ArrayList<>();
+    private final StringBuilder expression = new StringBuilder();
+
+    StructuralDeduplication(TestcaseGenerator ctx) {
+        this.ctx = ctx;
+    }
+
+    static void apply(TestcaseGenerator ctx) {
+        new StructuralDeduplication(ctx).merge();
+    }
+
+    private void merge() {
+        for (SourceCodeGenerator generator : ctx.introspectionStatus.values()) {
+            if (generator instanceof IntrospectionResult && !indexes.containsKey(generator)) {
+                indexes.put((IntrospectionResult) generator, nodes.size());
+                nodes.add((IntrospectionResult) generator);
+            }
+        }
+        int[] groups = initialGroups();
+        int groupCount = count(groups);
+        while (true) {
+            final int[] refined = refine(groups);
+            final int refinedCount = count(refined);
+            groups = refined;
+            if (refinedCount == groupCount) {
+                groupCount = separateDistinctElements(groups, groupCount);
+                if (groupCount == refinedCount) {
+                    break;
+                }
+            } else {
+                groupCount = refinedCount;
+            }
+        }
+        if (groupCount == nodes.size()) {
+            return;
+        }
+        final IntrospectionResult[] representatives = new IntrospectionResult[groupCount];
+        for (int i = 0; i < nodes.size(); i++) {
+            final IntrospectionResult node = nodes.get(i);
+            final IntrospectionResult representative = representatives[groups[i]];
+            if (representative == null || isBetterRepresentative(node, representative)) {
+                representatives[groups[i]] = node;
+            }
+        }
+        final Map<SourceCodeGenerator, SourceCodeGenerator> replacements = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            final IntrospectionResult node = nodes.get(i);
+            if (!node.isPublicFlag() && representatives[groups[i]] != node) {
+                replacements.put(node, representatives[groups[i]]);
+            }
+        }
+        for (Map.Entry<Object, SourceCodeGenerator> entry : ctx.introspectionStatus.entrySet()) {
+            final SourceCodeGenerator replacement = replacements.get(entry.getValue());
+            if (replacement != null) {
+                entry.setValue(replacement);
+            }
+        }
+        renumber(replacements);
+    }
+
+    /**
+     * The root objects are preferred, so their getters stay, then the first captured one.
+     */
+    private static boolean isBetterRepresentative(IntrospectionResult node, IntrospectionResult current) {
+        if (node.isPublicFlag() != current.isPublicFlag()) {
+            return node.isPublicFlag();
+        }
+        return node.getCounter() < current.getCounter();
+    }
+
+    /**
+     * Closes the gaps left by the merged objects in the counters.
+     */
+    private void renumber(Map<SourceCodeGenerator, SourceCodeGenerator> replacements) {
+        final Map<String, List<IntrospectionResult>> byType = new HashMap<>();
+        for (IntrospectionResult node : nodes) {
+            if (!replacements.containsKey(node)) {
+                byType.computeIfAbsent(node.getTypeName(), type -> new ArrayList<>()).add(node);
+            }
+        }
+        for (List<IntrospectionResult> sameType : byType.values()) {
+            sameType.sort(Comparator.comparingInt(IntrospectionResult::getCounter));
+            for (int i = 0; i < sameType.size(); i++) {
+                sameType.get(i).setCounter(i);
+            }
+        }
+    }
+
+    private int[] initialGroups() {
+        final Map<List<Object>, Integer> groupIds = new HashMap<>();
+        final int[] groups = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            final List<Object> signature = new ArrayList<>();
+            final List<IntrospectionResult> referred = new ArrayList<>();
+            describe(nodes.get(i), signature, referred);
+            final int[] referredIndexes = new int[referred.size()];
+            for (int j = 0; j < referredIndexes.length; j++) {
+                referredIndexes[j] = indexes.get(referred.get(j));
+            }
+            children.add(referredIndexes);
+            groups[i] = groupIds.computeIfAbsent(signature, key -> groupIds.size());
+        }
+        return groups;
+    }
+
+    /**
+     * Splits the groups by the groups of the referenced objects.
+     */
+    private int[] refine(int[] groups) {
+        final Map<List<Integer>, Integer> groupIds = new HashMap<>();
+        final int[] refined = new int[groups.length];
+        for (int i = 0; i < groups.length; i++) {
+            final int[] referred = children.get(i);
+            final List<Integer> key = new ArrayList<>(referred.length + 1);
+            key.add(groups[i]);
+            for (int child : referred) {
+                key.add(groups[child]);
+            }
+            refined[i] = groupIds.computeIfAbsent(key, k -> groupIds.size());
+        }
+        return refined;
+    }
+
+    /**
+     * Moves the elements of the same set, which are in the same group, into new groups.
+     *
+     * @return the new number of groups.
+     */
+    private int separateDistinctElements(int[] groups, int groupCount) {
+        int count = groupCount;
+        for (List<IntrospectionResult> elements : distinctElements) {
+            final Set<Integer> seen = new HashSet<>();
+            for (IntrospectionResult element : elements) {
+                final int index = indexes.get(element);
+                if (!seen.add(groups[index])) {
+                    groups[index] = count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int count(int[] groups) {
+        int max = -1;
+        for (int group : groups) {
+            max = Math.max(max, group);
+        }
+        return max + 1;
+    }
+
+    /**
+     * Describes the code generated for the object, except the references to the other captured objects, which are
+     * only marked in the signature, and collected in the order of their appearance.
+     */
+    void describe(IntrospectionResult node, List<Object> signature, List<IntrospectionResult> referred) {
+        signature.add(node.getType() != null ? node.getType().getName() : node.getTypeName());
+        for (Map.Entry<String, Object> entry : new TreeMap<>(node.getAttributes()).entrySet()) {
+            final Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            signature.add(entry.getKey());
+            final String truncation = node.getTruncation(entry.getKey());
+            if (truncation != null) {
+                signature.add(truncation);
+            }
+            if (value.getClass().isPrimitive() || value instanceof Boolean) {
+                signature.add("literal:" + value);
+            } else if (value instanceof String) {
+                signature.add("string:" + value);
+            } else {
+                final SourceCodeGenerator generator = ctx.getSourceCodeGenerator(value);
+                if (generator == null) {
+                    final String reason = ctx.getTruncation(value);
+                    signature.add("skipped:" + (reason != null ? reason : value.toString()));
+                } else {
+                    describeValue(value, generator, signature, referred);
+                }
+            }
+        }
+    }
+
+    private void describeValue(Object value, SourceCodeGenerator generator, List<Object> signature, List<IntrospectionResult> referred) {
+        if (generator instanceof IntrospectionResult) {
+            signature.add("ref");
+            referred.add((IntrospectionResult) generator);
+        } else if (value instanceof Collection) {
+            signature.add(value instanceof Set ? "set[" : "list[");
+            final int first = referred.size();
+            for (Object element : (Collection<?>) value) {
+                final SourceCodeGenerator elementGenerator = ctx.getSourceCodeGenerator(element);
+                if (elementGenerator != null) {
+                    describeValue(element, elementGenerator, signature, referred);
+                }
+            }
+            if (value instanceof Set) {
+                addDistinctElements(referred.subList(first, referred.size()));
+            }
+            signature.add("]");
+        } else if (generator instanceof MapSourceCodeGenerator) {
+            signature.add(((MapSourceCodeGenerator) generator).getMapType() + "[");
+            final List<IntrospectionResult> keys = new ArrayList<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                final SourceCodeGenerator key = generatorOf(entry.getKey());
+                final SourceCodeGenerator element = generatorOf(entry.getValue());
+                if (key != null && element != null) {
+                    describeValue(entry.getKey(), key, signature, referred);
+                    if (key instanceof IntrospectionResult) {
+                        keys.add((IntrospectionResult) key);
+                    }
+                    describeValue(entry.getValue(), element, signature, referred);
+                }
+            }
+            addDistinctElements(keys);
+            signature.add("]");
+        } else {
+            expression.setLength(0);
+            try {
+                generator.writeObjectAccess(expression);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            signature.add("value:" + expression);
+        }
+    }
+
+    private void addDistinctElements(List<IntrospectionResult> elements) {
+        if (elements.size() > 1) {
+            distinctElements.add(new ArrayList<>(elements));
+        }
+    }
+
+    private SourceCodeGenerator generatorOf(Object value) {
+        return value != null ? ctx.getSourceCodeGenerator(value) : MapSourceCodeGenerator.NULL;
+    }
+}
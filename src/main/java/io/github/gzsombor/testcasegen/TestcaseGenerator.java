@@ -17,36 +17,81 @@ package io.github.gzsombor.testcasegen;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.github.gzsombor.testcasegen.src.CollectionSourceCodeGenerator;
 import io.github.gzsombor.testcasegen.src.EnumSourceCode;
+import io.github.gzsombor.testcasegen.src.FixSourceCodeGenerator;
 import io.github.gzsombor.testcasegen.src.InstantSourceCode;
 import io.github.gzsombor.testcasegen.src.LocalDateSourceCode;
+import io.github.gzsombor.testcasegen.src.MapSourceCodeGenerator;
 import io.github.gzsombor.testcasegen.src.NumberSourceCode;
+import io.github.gzsombor.testcasegen.src.PrimitiveArraySourceCode;
 import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
 import io.github.gzsombor.testcasegen.src.StringSourceCode;
-import io.github.gzsombor.testcasegen.src.TimeIntrospector;
 
 public class TestcaseGenerator {
 
-    TestcaseGeneratorConfig config;
-    Map<Class<?>, Introspector> introspectedTypes = new HashMap<>();
+    final CaptureSettings config;
+    Map<Class<?>, Introspector> introspectedTypes;
 
-    Map<Object, SourceCodeGenerator> introspectionStatus = new HashMap<>();
+    Map<Object, SourceCodeGenerator> introspectionStatus;
+
+    Map<Object, String> truncatedObjects;
+
+    /**
+     * The access expressions of the objects which are already written by an {@link IncrementalTestcaseWriter}, without
+     * keeping the objects alive. Null for the other generators.
+     */
+    WeakObjectMap<SourceCodeGenerator> emittedObjects;
+
+    /**
+     * The next getter number of each type, counted by the generator, so the plans shared through the configuration
+     * number the objects of every capture from zero.
+     */
+    private final Map<Class<?>, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The generators built for values which are not captured as objects - collections, strings, dates - so every
+     * value is resolved once, no matter how many objects refer to it.
+     */
+    private Map<Object, SourceCodeGenerator> resolvedValues = new IdentityHashMap<>();
+
+    /**
+     * False when the getters are written while walking the graph, the values are resolved again then, instead of
+     * keeping them until the end of the walk.
+     */
+    boolean memoizeResolvedValues = true;
+
+    /**
+     * The referenced classes read back from a snapshot, where the captured values don't have their classes.
+     */
+    final Set<String> snapshotTypes = new TreeSet<>();
 
     public TestcaseGenerator(TestcaseGeneratorConfig config) {
+        this(config.settings());
+    }
+
+    TestcaseGenerator(CaptureSettings config) {
         this.config = config;
-        this.introspectedTypes = new HashMap<>();
+        this.introspectedTypes = config.sharedPlans != null ? config.sharedPlans : new ConcurrentHashMap<>();
+        this.introspectionStatus = config.deduplicateEqualObjects ? new HashMap<>() : new IdentityHashMap<>();
+        this.truncatedObjects = config.deduplicateEqualObjects ? new HashMap<>() : new IdentityHashMap<>();
     }
 
     public void introspect(Object obj) throws ReflectionException {
@@ -58,122 +103,468 @@ public class TestcaseGenerator {
     }
 
     private void walkList(List<Object> input) throws ReflectionException {
+        clearResolvedValues();
+        if (config.isGraphBudgetSet()) {
+            walkWithBudget(input);
+        } else if (config.capturePool != null) {
+            walkParallel(input);
+        } else {
+            walkSequential(input);
+        }
+        for (Object obj : input) {
+            SourceCodeGenerator codeGenerator = introspectionStatus.get(obj);
+            if (codeGenerator != null) {
+                codeGenerator.setPublicFlag(true);
+            }
+        }
+        if (config.deduplicateStructures) {
+            StructuralDeduplication.apply(this);
+            // the collections could refer to the merged objects
+            clearResolvedValues();
+        }
+    }
+
+    private void walkSequential(List<Object> input) throws ReflectionException {
         List<Object> queue = new ArrayList<>(input);
         while (!queue.isEmpty()) {
             Object obj = queue.remove(queue.size() - 1);
             if (!introspectionStatus.containsKey(obj)) {
-                Introspector plan = getPlan(obj.getClass());
-                if (plan != null) {
-                    SourceCodeGenerator result = plan.introspect(obj);
+                SourceCodeGenerator result = capture(obj);
+                if (result != null) {
                     introspectionStatus.put(obj, result);
                     queue.addAll(result.getReferredObjects());
                 }
             }
         }
-        for (Object obj : input) {
-            SourceCodeGenerator codeGenerator = introspectionStatus.get(obj);
-            if (codeGenerator != null) {
-                codeGenerator.setPublicFlag(true);
-            }
-        }
     }
 
-    public List<SourceCodeGenerator> getIntrospectionResults() {
-        Comparator<String> stringComp = Comparator.nullsLast((obj1, obj2) -> 
-            obj1.compareTo(obj2)
-        );
-        return introspectionStatus.values().stream().sorted((s1, s2) -> stringComp.compare(s1.getOrdering(), s2.getOrdering())).collect(Collectors.toList());
+    /**
+     * Walks the graph breadth first, so every object is reached on the shortest path, and stops capturing objects
+     * when the depth, node count or time limit is reached. The objects which are left out are remembered, so the
+     * generated code can tell why they are missing.
+     */
+    private void walkWithBudget(List<Object> input) throws ReflectionException {
+        final long deadline = config.captureTimeout != null ? System.nanoTime() + config.captureTimeout.toNanos() : 0;
+        Collection<Object> level = input;
+        int depth = 0;
+        while (!level.isEmpty()) {
+            final ArrayDeque<Object> nextLevel = new ArrayDeque<>();
+            for (Object obj : level) {
+                if (introspectionStatus.containsKey(obj) || getPlan(obj.getClass()) == null) {
+                    continue;
+                }
+                final String truncation;
+                if (depth > config.maxDepth) {
+                    truncation = "not captured, the depth limit of " + config.maxDepth + " is reached";
+                } else if (introspectionStatus.size() >= config.maxNodes) {
+                    truncation = "not captured, the limit of " + config.maxNodes + " objects is reached";
+                } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                    truncation = "not captured, the capture timeout of " + config.captureTimeout + " is reached";
+                } else {
+                    truncation = null;
+                }
+                if (truncation != null) {
+                    truncatedObjects.put(obj, truncation);
+                } else {
+                    SourceCodeGenerator result = capture(obj);
+                    introspectionStatus.put(obj, result);
+                    truncatedObjects.remove(obj);
+                    nextLevel.addAll(result.getReferredObjects());
+                }
+            }
+            level = nextLevel;
+            depth++;
+        }
     }
 
     /**
-     * @param obj
-     * @return
+     * Introspects the objects on the capture pool, then replays the sequential walk order over the captured results,
+     * to register them and to renumber the {@link IntrospectionResult}s in the same order as {@link #walkSequential}
+     * would have numbered them.
      */
-    private Introspector getPlan(Class<?> type) {
-        Introspector plan = introspectedTypes.get(type);
-        if (plan == null) {
-            plan = config.builtinIntrospector.get(type);
-            if (plan != null) {
-                return plan;
+    private void walkParallel(List<Object> input) throws ReflectionException {
+        final ParallelCapture capture = new ParallelCapture();
+        config.capturePool.invoke(capture.new CaptureTask(null, input));
+
+        final List<Object> queue = new ArrayList<>(input);
+        final Map<Class<?>, List<IntrospectionResult>> resultsByType = new HashMap<>();
+        while (!queue.isEmpty()) {
+            Object obj = queue.remove(queue.size() - 1);
+            if (!introspectionStatus.containsKey(obj)) {
+                SourceCodeGenerator result = capture.results.get(capture.key(obj));
+                if (result != null) {
+                    introspectionStatus.put(obj, result);
+                    queue.addAll(result.getReferredObjects());
+                    if (result instanceof IntrospectionResult) {
+                        IntrospectionResult introspectionResult = (IntrospectionResult) result;
+                        resultsByType.computeIfAbsent(introspectionResult.getType(), type -> new ArrayList<>()).add(introspectionResult);
+                    }
+                }
             }
-            if (type.isEnum()) {
-                return (object) -> new EnumSourceCode((Enum) object);
+        }
+        for (List<IntrospectionResult> results : resultsByType.values()) {
+            final int[] counters = new int[results.size()];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = results.get(i).getCounter();
             }
-            if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
-                return (object) -> new NumberSourceCode((Number) object);
+            Arrays.sort(counters);
+            for (int i = 0; i < counters.length; i++) {
+                results.get(i).setCounter(counters[i]);
             }
-            if (String.class.equals(type)) {
-                return (object) -> new StringSourceCode((String) object);
+        }
+    }
+
+    private final class ParallelCapture {
+        final Set<Object> claimed = ConcurrentHashMap.newKeySet();
+        final Map<Object, SourceCodeGenerator> results = new ConcurrentHashMap<>();
+
+        Object key(Object obj) {
+            return config.deduplicateEqualObjects ? obj : new IdentityKey(obj);
+        }
+
+        boolean claim(Object obj) {
+            return !introspectionStatus.containsKey(obj) && claimed.add(key(obj));
+        }
+
+        final class CaptureTask extends CountedCompleter<Void> {
+            private static final long serialVersionUID = 1L;
+
+            private final Object obj;
+            private final List<Object> roots;
+
+            CaptureTask(CaptureTask parent, Object obj) {
+                super(parent);
+                this.obj = obj;
+                this.roots = null;
             }
-            if (Instant.class.equals(type)) {
-                return new TimeIntrospector();
+
+            CaptureTask(CaptureTask parent, List<Object> roots) {
+                super(parent);
+                this.obj = null;
+                this.roots = roots;
             }
-            if (type.isArray()) {
-                return null;
+
+            @Override
+            public void compute() {
+                if (roots != null) {
+                    forkAll(roots);
+                } else {
+                    SourceCodeGenerator result = capture(obj);
+                    if (result != null) {
+                        results.put(key(obj), result);
+                        forkAll(result.getReferredObjects());
+                    }
+                }
+                tryComplete();
             }
-            if (type.getPackage().getName().startsWith("java.")) {
-                return null;
+
+            private void forkAll(List<Object> objects) {
+                for (Object child : objects) {
+                    if (claim(child)) {
+                        addToPendingCount(1);
+                        new CaptureTask(this, child).fork();
+                    }
+                }
             }
-            if (isHibernateProxy(type)) {
-                // handle hibernate proxies
-                return getPlan(type.getSuperclass());
+        }
+    }
+
+    private static final class IdentityKey {
+        private final Object obj;
+
+        IdentityKey(Object obj) {
+            this.obj = obj;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(obj);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).obj == obj;
+        }
+    }
+
+    /**
+     * Introspects a single object, without registering it.
+     *
+     * @return the generator for the object, or null if the type of the object can't be introspected.
+     */
+    SourceCodeGenerator capture(Object obj) throws ReflectionException {
+        Introspector plan = getPlan(obj.getClass());
+        if (plan == null) {
+            return null;
+        }
+        final CaptureListener listener = config.captureListener;
+        final SourceCodeGenerator result;
+        final long start = listener != CaptureListener.NONE ? System.nanoTime() : 0;
+        if (plan instanceof IntrospectionPlan) {
+            final IntrospectionPlan introspectionPlan = (IntrospectionPlan) plan;
+            result = introspectionPlan.introspect(obj, nextCounter(introspectionPlan.getType()), listener);
+        } else {
+            result = plan.introspect(obj);
+        }
+        if (listener != CaptureListener.NONE) {
+            listener.objectCaptured(obj.getClass(), System.nanoTime() - start);
+        }
+        if (config.maxCollectionSize != Integer.MAX_VALUE && result instanceof IntrospectionResult) {
+            ((IntrospectionResult) result).limitCollections(config.maxCollectionSize, config.collectionSampling);
+        }
+        return result;
+    }
+
+    private int nextCounter(Class<?> type) {
+        return counters.computeIfAbsent(type, key -> new AtomicInteger()).getAndIncrement();
+    }
+
+    /**
+     * @return the reason why the object is missing from the captured graph, or null if it is not left out by a
+     *         capture limit.
+     */
+    String getTruncation(Object obj) {
+        return truncatedObjects.isEmpty() ? null : truncatedObjects.get(obj);
+    }
+
+    /**
+     * @return the generators of the captured objects, ordered by the simple name of their type, and then by their
+     *         counter numerically, so {@code getOrder2()} comes before {@code getOrder10()}. The generators of the
+     *         simple values are at the end.
+     */
+    public List<SourceCodeGenerator> getIntrospectionResults() {
+        // with the structural deduplication, multiple objects can share a generator
+        final Set<SourceCodeGenerator> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Map<String, Integer> typeRanks = new TreeMap<>();
+        for (SourceCodeGenerator generator : introspectionStatus.values()) {
+            if (distinct.add(generator) && generator instanceof IntrospectionResult) {
+                typeRanks.put(getTypeKey((IntrospectionResult) generator), 0);
             }
-            if (check(type)) {
-                plan = new IntrospectionPlan(type);
-                introspectedTypes.put(type, plan);
+        }
+        int rank = 0;
+        for (Map.Entry<String, Integer> entry : typeRanks.entrySet()) {
+            entry.setValue(rank++);
+        }
+        final SortKey[] keys = new SortKey[distinct.size()];
+        int i = 0;
+        for (SourceCodeGenerator generator : distinct) {
+            long key = Long.MAX_VALUE;
+            if (generator instanceof IntrospectionResult) {
+                final IntrospectionResult result = (IntrospectionResult) generator;
+                key = ((long) typeRanks.get(getTypeKey(result)) << 32) | (result.getCounter() & 0xffffffffL);
             }
+            keys[i++] = new SortKey(key, generator);
+        }
+        Arrays.sort(keys);
+        final List<SourceCodeGenerator> results = new ArrayList<>(keys.length);
+        for (SortKey key : keys) {
+            results.add(key.generator);
         }
-        return plan;
+        return results;
     }
 
-    private boolean isHibernateProxy(Class<?> type) {
-        final String simpleName = type.getSimpleName();
-        if (simpleName.contains("_$$_") && simpleName.startsWith(type.getSuperclass().getSimpleName())) {
-            return true;
+    /**
+     * @return the canonical names of the captured classes and of the enums, which the generated code refers to by their
+     *         simple names, so they can be imported.
+     */
+    public SortedSet<String> getReferencedTypes() {
+        final SortedSet<String> names = new TreeSet<>(snapshotTypes);
+        final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (SourceCodeGenerator generator : getIntrospectionResults()) {
+            if (generator instanceof IntrospectionResult) {
+                final IntrospectionResult result = (IntrospectionResult) generator;
+                addReferencedType(result.getType(), names);
+                for (Object value : result.getAttributes().values()) {
+                    addReferencedTypes(value, names, visited);
+                }
+            }
         }
-        for (Class<?> iface : type.getInterfaces()) {
-            if ("org.hibernate.proxy.HibernateProxy".equals(iface.getName())) {
-                return true;
+        return names;
+    }
+
+    private static void addReferencedTypes(Object value, Set<String> names, Set<Object> visited) {
+        if (value instanceof Enum) {
+            addReferencedType(((Enum<?>) value).getDeclaringClass(), names);
+        } else if (value instanceof Collection && visited.add(value)) {
+            for (Object element : (Collection<?>) value) {
+                addReferencedTypes(element, names, visited);
+            }
+        } else if (value instanceof Map && visited.add(value)) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                addReferencedTypes(entry.getKey(), names, visited);
+                addReferencedTypes(entry.getValue(), names, visited);
             }
         }
-        return false;
+    }
+
+    private static void addReferencedType(Class<?> type, Set<String> names) {
+        if (type != null && !type.isArray() && type.getCanonicalName() != null) {
+            names.add(type.getCanonicalName());
+        }
+    }
+
+    private static String getTypeKey(IntrospectionResult result) {
+        return result.getType() != null ? result.getTypeName() + ' ' + result.getType().getName() : result.getTypeName();
+    }
+
+    private static final class SortKey implements Comparable<SortKey> {
+        final long key;
+        final SourceCodeGenerator generator;
+
+        SortKey(long key, SourceCodeGenerator generator) {
+            this.key = key;
+            this.generator = generator;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            return Long.compare(key, other.key);
+        }
+    }
+
+    /**
+     * @param obj
+     * @return
+     */
+    Introspector getPlan(Class<?> type) {
+        Introspector plan = introspectedTypes.get(type);
+        if (plan == null) {
+            plan = resolvePlan(type);
+            Introspector existing = introspectedTypes.putIfAbsent(type, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan != TypeClassification.NOT_INTROSPECTABLE ? plan : null;
+    }
+
+    private Introspector resolvePlan(Class<?> type) {
+        Introspector plan = config.builtinIntrospector.get(type);
+        if (plan != null) {
+            return plan;
+        }
+        final TypeClassification classification = TypeClassification.of(type);
+        if (classification.getIntrospector() != null) {
+            return classification.getIntrospector();
+        }
+        final Class<?> beanType = classification.getBeanType();
+        if (beanType != type) {
+            // a proxy, it is captured as its superclass
+            plan = getPlan(beanType);
+            return plan != null ? plan : TypeClassification.NOT_INTROSPECTABLE;
+        }
+        if (check(type)) {
+            return new IntrospectionPlan(type, config.accessorFactory, config.getGeneratedAccessors(type));
+        }
+        return TypeClassification.NOT_INTROSPECTABLE;
     }
 
     public boolean check(Class<?> type) {
-        System.out.println("Checking " + type);
-        return !config.skipClasses.contains(type);
+        if (config.skipClasses.contains(type)) {
+            return false;
+        }
+        config.captureListener.typeDiscovered(type);
+        return true;
     }
 
     public SourceCodeGenerator getSourceCodeGenerator(Object value) {
         final SourceCodeGenerator scg = introspectionStatus.get(value);
-        if (scg == null) {
-            final Class type = value.getClass();
-            if (type.isEnum()) {
-                return new EnumSourceCode((Enum) value);
-            }
-            if (type.isPrimitive() || value instanceof Number) {
-                return new NumberSourceCode((Number) value);
-            }
-            if (value instanceof String) {
-                return new StringSourceCode((String) value);
+        if (scg != null) {
+            return scg;
+        }
+        if (emittedObjects != null) {
+            final SourceCodeGenerator emitted = emittedObjects.get(value);
+            if (emitted != null) {
+                return emitted;
             }
-            if (value instanceof LocalDate) {
-                return new LocalDateSourceCode((LocalDate) value);
+        }
+        if (!memoizeResolvedValues) {
+            return resolveValue(value);
+        }
+        SourceCodeGenerator resolved = resolvedValues.get(value);
+        if (resolved == null && !resolvedValues.containsKey(value)) {
+            resolved = resolveValue(value);
+            resolvedValues.put(value, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Forgets the generators of the collections and simple values, they have to be rebuilt when new objects are
+     * captured, as the elements of a collection could have been changed.
+     */
+    void clearResolvedValues() {
+        if (!resolvedValues.isEmpty()) {
+            resolvedValues = new IdentityHashMap<>();
+        }
+    }
+
+    private SourceCodeGenerator resolveValue(Object value) {
+        if (value instanceof SourceCodeGenerator) {
+            // a value read back from a snapshot
+            return (SourceCodeGenerator) value;
+        }
+        final Class type = value.getClass();
+        if (type.isEnum()) {
+            return new EnumSourceCode((Enum) value);
+        }
+        if (type.isPrimitive() || value instanceof Number) {
+            return new NumberSourceCode((Number) value);
+        }
+        if (value instanceof String) {
+            return new StringSourceCode((String) value);
+        }
+        if (value instanceof Boolean) {
+            // only reached from the collections and maps, the properties are written as a literal
+            return new FixSourceCodeGenerator(value.toString(), 3);
+        }
+        if (value instanceof LocalDate) {
+            return new LocalDateSourceCode((LocalDate) value);
+        }
+        if (value instanceof Instant) {
+            return new InstantSourceCode((Instant) value);
+        }
+        if (type.isArray() && type.getComponentType().isPrimitive()) {
+            return new PrimitiveArraySourceCode(value);
+        }
+        if (value instanceof Collection) {
+            final Collection<Object> collection = (Collection<Object>) value;
+            final List<SourceCodeGenerator> scgList = new ArrayList<>(collection.size());
+            int truncated = 0;
+            String reason = null;
+            for (Object obj : collection) {
+                final SourceCodeGenerator element = getSourceCodeGenerator(obj);
+                if (element != null) {
+                    scgList.add(element);
+                } else if (obj != null && getTruncation(obj) != null) {
+                    truncated++;
+                    reason = reason != null ? reason : getTruncation(obj);
+                }
             }
-            if (value instanceof Instant) {
-                return new InstantSourceCode((Instant) value);
+            final String truncation = truncated > 0 ? truncated + " of " + collection.size() + " elements " + reason : null;
+            return new CollectionSourceCodeGenerator(scgList, value instanceof Set, truncation);
+        }
+        if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            final String mapType = MapSourceCodeGenerator.getMapType(map);
+            if (mapType == null) {
+                return null;
             }
-            if (value instanceof Collection) {
-                final List<SourceCodeGenerator> scgList = ((Collection<Object>) value).stream().map(obj -> getSourceCodeGenerator(obj))
-                        .filter(obj -> obj != null).collect(Collectors.toList());
-                if (value instanceof Set) {
-                    return new CollectionSourceCodeGenerator(scgList, true);
-                } else {
-                    return new CollectionSourceCodeGenerator(scgList, false);
+            final List<SourceCodeGenerator> keys = new ArrayList<>(map.size());
+            final List<SourceCodeGenerator> values = new ArrayList<>(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                final SourceCodeGenerator key = entry.getKey() != null ? getSourceCodeGenerator(entry.getKey()) : MapSourceCodeGenerator.NULL;
+                final SourceCodeGenerator element = entry.getValue() != null ? getSourceCodeGenerator(entry.getValue())
+                        : MapSourceCodeGenerator.NULL;
+                // like in the collections, the entries which can't be written are left out
+                if (key != null && element != null) {
+                    keys.add(key);
+                    values.add(element);
                 }
             }
+            return new MapSourceCodeGenerator(mapType, keys, values);
         }
-        return scg;
+        return null;
     }
 
 }
@@ -15,28 +15,118 @@
  */
 package io.github.gzsombor.testcasegen;
 
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * The settings of the captures. The configuration is built on one thread, and can be {@link #freeze() frozen} into an
+ * immutable copy, which any number of generators can share from different threads.
+ */
 public class TestcaseGeneratorConfig {
 
+    private static final Logger LOG = Logger.getLogger(TestcaseGeneratorConfig.class.getName());
+
     Map<Class<?>, Introspector> builtinIntrospector = new HashMap<>();
 
     Set<Class<?>> skipClasses = new HashSet<>();
 
+    AccessorFactory accessorFactory = new MethodHandleAccessorFactory();
+
+    /**
+     * The accessors found with the {@link ServiceLoader}, shared by the configurations created with the same context
+     * class loader.
+     */
+    final Map<Class<?>, GeneratedAccessors> discoveredAccessors;
+    Map<Class<?>, GeneratedAccessors> generatedAccessors = new HashMap<>();
+    boolean useGeneratedAccessors = true;
+
+    boolean deduplicateEqualObjects;
+    boolean deduplicateStructures;
+
+    ForkJoinPool capturePool;
+
+    int maxDepth = Integer.MAX_VALUE;
+    int maxNodes = Integer.MAX_VALUE;
+    int maxCollectionSize = Integer.MAX_VALUE;
+    CollectionSampling collectionSampling = CollectionSampling.HEAD;
+    Duration captureTimeout;
+
+    CaptureListener captureListener = CaptureListener.NONE;
+
+    int maxMethodSize = 8000;
+    int maxClassSize = 200_000;
+
+    Set<String> identityProperties = new HashSet<>();
+
+    /**
+     * The settings of a frozen configuration, which are read instead of the fields above. Null while the
+     * configuration can be changed.
+     */
+    private final CaptureSettings frozenSettings;
+
     public TestcaseGeneratorConfig() {
+        this.frozenSettings = null;
+        this.discoveredAccessors = DiscoveredAccessors.get(Thread.currentThread().getContextClassLoader());
+    }
+
+    private TestcaseGeneratorConfig(CaptureSettings frozenSettings) {
+        this.frozenSettings = frozenSettings;
+        this.discoveredAccessors = frozenSettings.discoveredAccessors;
+    }
+
+    /**
+     * @return an immutable copy of the configuration, or this one if it is already frozen. The settings of the copy
+     *         are kept in final fields, so it can be shared by the captures running on different threads without
+     *         locking, even when it is not handed over to them safely. The registered introspectors
+     *         are shared with this configuration, and the plans of the other classes are resolved once and shared by
+     *         the generators of the copy, as the {@link IntrospectionPlan}s can be used concurrently. Each generator
+     *         numbers its own objects.
+     */
+    public TestcaseGeneratorConfig freeze() {
+        return isFrozen() ? this : new TestcaseGeneratorConfig(new CaptureSettings(this, new ConcurrentHashMap<>()));
+    }
+
+    public boolean isFrozen() {
+        return frozenSettings != null;
+    }
+
+    /**
+     * @return the settings read by a generator: the final copy of a frozen configuration, or a copy of the current
+     *         settings, which the later changes of the configuration don't affect.
+     */
+    CaptureSettings settings() {
+        return isFrozen() ? frozenSettings : new CaptureSettings(this, null);
+    }
+
+    private void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new IllegalStateException("The configuration is frozen, it can't be modified");
+        }
     }
 
     public IntrospectionPlan addDefaultIntrospector(Class<?> type) {
-        IntrospectionPlan plan = new IntrospectionPlan(type);
+        checkNotFrozen();
+        IntrospectionPlan plan = new IntrospectionPlan(type, accessorFactory, getGeneratedAccessors(type));
         addIntrospector(type, plan);
         return plan;
     }
 
     public void addSkipClass(Class<?> type) {
+        checkNotFrozen();
         if(builtinIntrospector.containsKey(type)) {
             throw new IllegalArgumentException("There is already an introspector registered for type " + type);
         }
@@ -44,6 +134,7 @@ public class TestcaseGeneratorConfig {
     }
 
     public void addSkipClasses(Class<?>... types) {
+        checkNotFrozen();
         for (Class<?> type : types) {
             if(builtinIntrospector.containsKey(type)) {
                 throw new IllegalArgumentException("There is already an introspector registered for type " + type);
@@ -53,17 +144,277 @@ public class TestcaseGeneratorConfig {
     }
 
     public void addIntrospector(Class<?> type, Introspector intros) {
+        checkNotFrozen();
         if (this.skipClasses.contains(type)) {
             throw new IllegalArgumentException("Type " + type + " is already marked as to be skipped!");
         }
         this.builtinIntrospector.put(type, intros);
     }
 
+    /**
+     * Sets the strategy used to read the properties, it applies to the plans created after this call. Defaults to
+     * {@link MethodHandleAccessorFactory}, use {@link ReflectionAccessorFactory} to read them through plain reflection.
+     */
+    public void setAccessorFactory(AccessorFactory accessorFactory) {
+        checkNotFrozen();
+        this.accessorFactory = accessorFactory;
+    }
+
+    public AccessorFactory getAccessorFactory() {
+        return isFrozen() ? frozenSettings.accessorFactory : accessorFactory;
+    }
+
+    /**
+     * By default the visited objects are tracked by identity, so the {@code equals}/{@code hashCode} of the domain
+     * objects are never called. When enabled, objects which are {@code equals} to an already visited one are merged
+     * into it, as before.
+     */
+    public void setDeduplicateEqualObjects(boolean deduplicateEqualObjects) {
+        checkNotFrozen();
+        this.deduplicateEqualObjects = deduplicateEqualObjects;
+    }
+
+    public boolean isDeduplicateEqualObjects() {
+        return isFrozen() ? frozenSettings.deduplicateEqualObjects : deduplicateEqualObjects;
+    }
+
+    /**
+     * When enabled, the captured objects which would generate the same code are merged after each introspection,
+     * even if they are not {@code equals}, and the references to them are written as a call to the same getter. The
+     * root objects keep their own getters, and the elements of a set, or the keys of a map are not merged with each
+     * other. Disabled by default.
+     * <p>
+     * The fixture is smaller, but not the same graph: the properties which referred to separate, equal objects share
+     * one instance, so a test which modifies it through one property sees the change through the others too.
+     */
+    public void setDeduplicateStructures(boolean deduplicateStructures) {
+        checkNotFrozen();
+        this.deduplicateStructures = deduplicateStructures;
+    }
+
+    public boolean isDeduplicateStructures() {
+        return isFrozen() ? frozenSettings.deduplicateStructures : deduplicateStructures;
+    }
+
+    /**
+     * Walks the object graph in parallel on the given pool, the getters of the different objects are called from
+     * multiple threads. The generated source is the same as with the sequential walk. Pass null to walk sequentially,
+     * which is the default. The depth, node and time limits depend on the walk order, when any of them is set, the
+     * graph is walked sequentially.
+     */
+    public void setCapturePool(ForkJoinPool capturePool) {
+        checkNotFrozen();
+        this.capturePool = capturePool;
+    }
+
+    public ForkJoinPool getCapturePool() {
+        return isFrozen() ? frozenSettings.capturePool : capturePool;
+    }
+
+    /**
+     * Objects which are farther from the introspected root objects than the given number of references are not
+     * captured.
+     * <p>
+     * Setting this, the node or the time limit switches the walk from depth first to breadth first, so the objects
+     * are numbered in a different order, and the getters of the fixture are renamed.
+     */
+    public void setMaxDepth(int maxDepth) {
+        checkNotFrozen();
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxDepth() {
+        return isFrozen() ? frozenSettings.maxDepth : maxDepth;
+    }
+
+    /**
+     * Stops capturing new objects when the given number of objects are captured by a generator. The graph is walked
+     * breadth first then, see {@link #setMaxDepth(int)}.
+     */
+    public void setMaxNodes(int maxNodes) {
+        checkNotFrozen();
+        this.maxNodes = maxNodes;
+    }
+
+    public int getMaxNodes() {
+        return isFrozen() ? frozenSettings.maxNodes : maxNodes;
+    }
+
+    /**
+     * Collections with more elements are truncated to the given size, the kept elements are selected by the sampling
+     * strategy. Unlike the other limits, it doesn't change the walk order.
+     */
+    public void setMaxCollectionSize(int maxCollectionSize, CollectionSampling collectionSampling) {
+        checkNotFrozen();
+        this.maxCollectionSize = maxCollectionSize;
+        this.collectionSampling = collectionSampling;
+    }
+
+    public int getMaxCollectionSize() {
+        return isFrozen() ? frozenSettings.maxCollectionSize : maxCollectionSize;
+    }
+
+    public CollectionSampling getCollectionSampling() {
+        return isFrozen() ? frozenSettings.collectionSampling : collectionSampling;
+    }
+
+    /**
+     * Stops capturing new objects after the given time is elapsed in a single introspect call. The graph is walked
+     * breadth first then, see {@link #setMaxDepth(int)}.
+     */
+    public void setCaptureTimeout(Duration captureTimeout) {
+        checkNotFrozen();
+        this.captureTimeout = captureTimeout;
+    }
+
+    public Duration getCaptureTimeout() {
+        return isFrozen() ? frozenSettings.captureTimeout : captureTimeout;
+    }
+
+    /**
+     * Initializers and collections which are estimated to compile to more bytecode than this are split into helper
+     * methods. The default keeps the methods below the size limit of the JIT compiler, it must stay below the 64KB
+     * limit of the JVM.
+     */
+    public void setMaxMethodSize(int maxMethodSize) {
+        checkNotFrozen();
+        this.maxMethodSize = maxMethodSize;
+    }
+
+    public int getMaxMethodSize() {
+        return isFrozen() ? frozenSettings.maxMethodSize : maxMethodSize;
+    }
+
+    /**
+     * If the whole fixture is estimated to compile to more bytecode than this, the getters are spread over several
+     * inner classes, so none of them exceeds the constant pool limit.
+     */
+    public void setMaxClassSize(int maxClassSize) {
+        checkNotFrozen();
+        this.maxClassSize = maxClassSize;
+    }
+
+    public int getMaxClassSize() {
+        return isFrozen() ? frozenSettings.maxClassSize : maxClassSize;
+    }
+
+    /**
+     * Reports the captured objects, the property reads with their timings and the size of the written code. Use
+     * {@link CaptureStatistics} to get a summary.
+     */
+    public void setCaptureListener(CaptureListener captureListener) {
+        checkNotFrozen();
+        this.captureListener = captureListener != null ? captureListener : CaptureListener.NONE;
+    }
+
+    public CaptureListener getCaptureListener() {
+        return isFrozen() ? frozenSettings.captureListener : captureListener;
+    }
+
+    /**
+     * Registers accessors for a type, which are used instead of reflection to read its properties. The accessors
+     * generated by the testcasegen-processor are registered automatically, when they are visible from the context
+     * class loader of the thread creating the configuration, or from the class loader of the library.
+     */
+    public void addGeneratedAccessors(GeneratedAccessors accessors) {
+        checkNotFrozen();
+        this.generatedAccessors.put(accessors.getType(), accessors);
+    }
+
+    /**
+     * When disabled, the properties are always read with the {@link #setAccessorFactory(AccessorFactory) accessor
+     * factory}, even for the types with generated accessors. Enabled by default.
+     */
+    public void setUseGeneratedAccessors(boolean useGeneratedAccessors) {
+        checkNotFrozen();
+        this.useGeneratedAccessors = useGeneratedAccessors;
+    }
+
+    public boolean isUseGeneratedAccessors() {
+        return isFrozen() ? frozenSettings.useGeneratedAccessors : useGeneratedAccessors;
+    }
+
+    /**
+     * Names the properties which identify an object across captures, like {@code "Id"} - the property names are
+     * capitalized as in the setter names. A regenerated fixture keeps the getter name of the objects with the same
+     * identity, see {@link FixtureFingerprints}.
+     */
+    public void addIdentityProperties(String... names) {
+        checkNotFrozen();
+        identityProperties.addAll(Arrays.asList(names));
+    }
+
+    public Set<String> getIdentityProperties() {
+        return isFrozen() ? frozenSettings.identityProperties : Collections.unmodifiableSet(identityProperties);
+    }
+
+    GeneratedAccessors getGeneratedAccessors(Class<?> type) {
+        if (isFrozen()) {
+            return frozenSettings.getGeneratedAccessors(type);
+        }
+        if (!useGeneratedAccessors) {
+            return null;
+        }
+        final GeneratedAccessors accessors = generatedAccessors.get(type);
+        return accessors != null ? accessors : discoveredAccessors.get(type);
+    }
+
+    /**
+     * @return the accessors registered as a service in the class loader, the broken providers are logged and skipped.
+     */
+    static Map<Class<?>, GeneratedAccessors> loadGeneratedAccessors(ClassLoader classLoader) {
+        final Map<Class<?>, GeneratedAccessors> accessors = new HashMap<>();
+        final Iterator<GeneratedAccessors> providers = ServiceLoader.load(GeneratedAccessors.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+            } catch (ServiceConfigurationError e) {
+                // the service files can't be read, the iteration can't continue
+                LOG.log(Level.WARNING, "Unable to list the generated accessors", e);
+                break;
+            }
+            try {
+                final GeneratedAccessors provider = providers.next();
+                accessors.put(provider.getType(), provider);
+            } catch (ServiceConfigurationError | LinkageError e) {
+                LOG.log(Level.WARNING, "Skipping the generated accessors which can't be loaded", e);
+            }
+        }
+        return accessors;
+    }
+
     public Introspector getIntrospector(Class<?> type) {
-        return builtinIntrospector.get(type);
+        return isFrozen() ? frozenSettings.builtinIntrospector.get(type) : builtinIntrospector.get(type);
     }
 
     public TestcaseGenerator startIntrospect() {
         return new TestcaseGenerator(this);
     }
+
+    /**
+     * The generated accessors are looked up once for each context class loader, in that loader and in the class loader
+     * of the library, so the accessors of an application or a test class loader are found too. The class loaders are
+     * not kept alive, and the accessors are looked up again once no configuration refers to them.
+     */
+    static final class DiscoveredAccessors {
+        private static final ClassLoader LIBRARY_LOADER = TestcaseGeneratorConfig.class.getClassLoader();
+        private static final Map<ClassLoader, WeakReference<Map<Class<?>, GeneratedAccessors>>> BY_LOADER = new WeakHashMap<>();
+
+        static synchronized Map<Class<?>, GeneratedAccessors> get(ClassLoader contextLoader) {
+            final ClassLoader loader = contextLoader != null ? contextLoader : LIBRARY_LOADER;
+            final WeakReference<Map<Class<?>, GeneratedAccessors>> cached = BY_LOADER.get(loader);
+            Map<Class<?>, GeneratedAccessors> accessors = cached != null ? cached.get() : null;
+            if (accessors == null) {
+                accessors = loadGeneratedAccessors(LIBRARY_LOADER);
+                if (loader != LIBRARY_LOADER) {
+                    accessors.putAll(loadGeneratedAccessors(loader));
+                }
+                accessors = Collections.unmodifiableMap(accessors);
+                BY_LOADER.put(loader, new WeakReference<>(accessors));
+            }
+            return accessors;
+        }
+    }
 }
@@ -15,18 +15,26 @@
  */
 package io.github.gzsombor.testcasegen;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import io.github.gzsombor.testcasegen.src.JavaLiteralEscaper;
 import io.github.gzsombor.testcasegen.src.SourceCodeGenerator;
 
 public class TestcaseSourceFormatter {
 
-    private final static String PADDING = "    ";
+    final static String PADDING = "    ";
+    final static String PART_FIELD = "part$";
 
     final TestcaseGenerator status;
     final PrintWriter out;
@@ -42,21 +50,230 @@ public class TestcaseSourceFormatter {
     }
 
     public void write(String name) {
+        final CaptureListener listener = status.config.captureListener;
+        if (listener == CaptureListener.NONE) {
+            write(name, out);
+        } else {
+            final CountingWriter counter = new CountingWriter(out);
+            final PrintWriter countingOut = new PrintWriter(counter);
+            write(name, countingOut);
+            countingOut.flush();
+            listener.codeEmitted(name, counter.count);
+        }
+    }
+
+    /**
+     * Writes a compilable source file: the package declaration, the imports of the classes which the generated code
+     * refers to by their simple names, and the class.
+     *
+     * @param packageName
+     *            the package of the class, or an empty string for the default package.
+     */
+    public void write(String packageName, String name) {
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        for (String type : getImports(packageName)) {
+            out.println("import " + type + ";");
+        }
+        out.println();
+        write(name);
+    }
+
+    /**
+     * @return the JDK classes used by the generated code, and the captured classes outside of {@code java.lang} and of
+     *         the package. When multiple classes have the same simple name, only the first is imported.
+     */
+    List<String> getImports(String packageName) {
+        final Map<String, String> imports = new LinkedHashMap<>();
+        imports.put("BigDecimal", "java.math.BigDecimal");
+        imports.put("LocalDate", "java.time.LocalDate");
+        imports.put("*", "java.util.*");
+        for (String type : status.getReferencedTypes()) {
+            final int separator = type.lastIndexOf('.');
+            if (separator > 0) {
+                final String owner = type.substring(0, separator);
+                if (!"java.lang".equals(owner) && !packageName.equals(owner)) {
+                    imports.putIfAbsent(type.substring(separator + 1), type);
+                }
+            }
+        }
+        return new ArrayList<>(imports.values());
+    }
+
+    private void write(String name, PrintWriter out) {
         List<SourceCodeGenerator> results = status.getIntrospectionResults();
+        final List<List<SourceCodeGenerator>> parts = splitParts(results);
+        try {
+            if (parts.size() == 1) {
+                out.println("public class " + name + " { ");
+                writeMembers(results, PADDING, out);
+            } else {
+                writeParts(name, parts, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.println("}");
+    }
+
+    /**
+     * Writes the captured objects into a data resource, and a class which loads them from that resource with
+     * {@link FixtureData} on the first access, instead of the getters which create the objects. The class only has a
+     * getter for each public object, so neither its size nor its compile time grows with the number of the captured
+     * objects.
+     *
+     * @param resourceName
+     *            the name of the data resource, relative to the package of the class.
+     */
+    public void writeExternalized(String name, String resourceName, Writer data) throws IOException {
+        final CaptureListener listener = status.config.captureListener;
+        if (listener == CaptureListener.NONE) {
+            writeExternalized(name, resourceName, data, out);
+        } else {
+            // both the class and the data are counted
+            final CountingWriter counter = new CountingWriter(out);
+            final PrintWriter countingOut = new PrintWriter(counter);
+            final CountingWriter dataCounter = new CountingWriter(data);
+            writeExternalized(name, resourceName, dataCounter, countingOut);
+            countingOut.flush();
+            listener.codeEmitted(name, counter.count + dataCounter.count);
+        }
+    }
+
+    private void writeExternalized(String name, String resourceName, Writer data, PrintWriter out) throws IOException {
+        final List<IntrospectionResult> nodes = new ArrayList<>();
+        for (SourceCodeGenerator generator : status.getIntrospectionResults()) {
+            if (generator instanceof IntrospectionResult) {
+                nodes.add((IntrospectionResult) generator);
+            }
+        }
+        new FixtureDataWriter(status, nodes).write(nodes, data);
+        out.println("public class " + name + " { ");
+        out.print(PADDING + "private final io.github.gzsombor.testcasegen.FixtureData data = new io.github.gzsombor.testcasegen.FixtureData("
+                + name + ".class, ");
+        JavaLiteralEscaper.writeString(resourceName, out);
+        out.println(");");
+        out.println();
+        for (int i = 0; i < nodes.size(); i++) {
+            final IntrospectionResult node = nodes.get(i);
+            if (node.isPublicFlag()) {
+                out.println(PADDING + "public " + node.getTypeName() + " " + node.getMethodName() + "() {");
+                out.println(PADDING + "    return data.get(" + i + ");");
+                out.println(PADDING + "}");
+                out.println();
+            }
+        }
+        out.println("}");
+    }
+
+    /**
+     * Layout stage: groups the getters into parts which are small enough to compile into a single class.
+     */
+    private List<List<SourceCodeGenerator>> splitParts(List<SourceCodeGenerator> results) {
+        final int maxClassSize = status.config.maxClassSize;
+        final List<List<SourceCodeGenerator>> parts = new ArrayList<>();
+        List<SourceCodeGenerator> part = new ArrayList<>();
+        long partSize = 0;
+        for (SourceCodeGenerator intro : results) {
+            final int size = intro.estimateInitializerSize();
+            if (size > 0 && partSize + size > maxClassSize && !part.isEmpty()) {
+                parts.add(part);
+                part = new ArrayList<>();
+                partSize = 0;
+            }
+            part.add(intro);
+            partSize += size;
+        }
+        parts.add(part);
+        for (int i = 0; i < parts.size(); i++) {
+            for (SourceCodeGenerator intro : parts.get(i)) {
+                if (intro instanceof IntrospectionResult) {
+                    ((IntrospectionResult) intro).setPart(parts.size() > 1 ? i : -1);
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Writes a facade class, with a field for each part, and delegating getters for the public objects. The parts are
+     * inner classes, so they reach each other through the fields of the facade.
+     */
+    private void writeParts(String name, List<List<SourceCodeGenerator>> parts, PrintWriter out) throws IOException {
         out.println("public class " + name + " { ");
+        for (int i = 0; i < parts.size(); i++) {
+            out.println(PADDING + "final " + name + "Part" + i + " " + PART_FIELD + i + " = new " + name + "Part" + i + "();");
+        }
+        out.println();
+        for (int i = 0; i < parts.size(); i++) {
+            for (SourceCodeGenerator intro : parts.get(i)) {
+                if (intro instanceof IntrospectionResult && intro.isPublicFlag()) {
+                    final IntrospectionResult result = (IntrospectionResult) intro;
+                    out.println(PADDING + "public " + result.getTypeName() + " " + result.getMethodName() + "() {");
+                    out.println(PADDING + "    return " + result.getObjectAccess() + ";");
+                    out.println(PADDING + "}");
+                    out.println();
+                }
+            }
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            out.println(PADDING + "final class " + name + "Part" + i + " {");
+            writeMembers(parts.get(i), PADDING + PADDING, out);
+            out.println(PADDING + "}");
+            out.println();
+        }
+    }
+
+    private void writeMembers(List<SourceCodeGenerator> results, String padding, PrintWriter out) throws IOException {
         for (SourceCodeGenerator intro : results) {
             String variableDeclaration = intro.getCacheVariableDeclaration();
             if (variableDeclaration != null) {
-                out.println(PADDING + variableDeclaration + ";");
+                out.println(padding + variableDeclaration + ";");
             }
         }
         out.println();
         for (SourceCodeGenerator intro : results) {
             if (intro.isHasInitializer()) {
-                out.println(intro.getInitializer(status, PADDING));
+                intro.writeInitializer(status, padding, out);
+                out.println();
             }
         }
-        out.println("}");
+    }
+
+    /**
+     * Counts the written characters for {@link CaptureListener#codeEmitted}.
+     */
+    static final class CountingWriter extends Writer {
+        private final Writer out;
+        long count;
+
+        CountingWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            count += len;
+            out.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            count += len;
+            out.write(str, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
     }
 
     public static String dumpCode(TestcaseGenerator generator, String className) {
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.time.Instant;
+
+import io.github.gzsombor.testcasegen.src.EnumSourceCode;
+import io.github.gzsombor.testcasegen.src.NumberIntrospector;
+import io.github.gzsombor.testcasegen.src.StringSourceCode;
+import io.github.gzsombor.testcasegen.src.TimeIntrospector;
+
+/**
+ * How a class is handled, independently of the configuration: either with one of the shared built-in introspectors,
+ * or not at all, or as a bean - in which case {@link #getBeanType()} tells which class has to be introspected, as
+ * the proxy classes are captured as their superclass.
+ *
+ * The classification is computed once per class and shared by every {@link TestcaseGenerator}.
+ */
+final class TypeClassification {
+
+    /**
+     * Marks the types which are not captured, like arrays and the classes from the java.* packages.
+     */
+    static final Introspector NOT_INTROSPECTABLE = (object) -> null;
+
+    private static final Introspector ENUM = (object) -> new EnumSourceCode((Enum) object);
+    private static final Introspector NUMBER = new NumberIntrospector();
+    private static final Introspector STRING = (object) -> new StringSourceCode((String) object);
+    private static final Introspector TIME = new TimeIntrospector();
+
+    private static final ClassValue<TypeClassification> CLASSIFICATIONS = new ClassValue<TypeClassification>() {
+        @Override
+        protected TypeClassification computeValue(Class<?> type) {
+            return classify(type);
+        }
+    };
+
+    private final Introspector introspector;
+    private final Class<?> beanType;
+
+    private TypeClassification(Introspector introspector, Class<?> beanType) {
+        this.introspector = introspector;
+        this.beanType = beanType;
+    }
+
+    /**
+     * @return the introspector for the non-bean types, or null for beans.
+     */
+    public Introspector getIntrospector() {
+        return introspector;
+    }
+
+    /**
+     * @return the class which needs to be introspected for a bean, or null for the other types.
+     */
+    public Class<?> getBeanType() {
+        return beanType;
+    }
+
+    static TypeClassification of(Class<?> type) {
+        return CLASSIFICATIONS.get(type);
+    }
+
+    private static TypeClassification classify(Class<?> type) {
+        if (type.isEnum()) {
+            return new TypeClassification(ENUM, null);
+        }
+        if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
+            return new TypeClassification(NUMBER, null);
+        }
+        if (String.class.equals(type)) {
+            return new TypeClassification(STRING, null);
+        }
+        if (Instant.class.equals(type)) {
+            return new TypeClassification(TIME, null);
+        }
+        if (type.isArray()) {
+            return new TypeClassification(NOT_INTROSPECTABLE, null);
+        }
+        if (type.getPackage().getName().startsWith("java.")) {
+            return new TypeClassification(NOT_INTROSPECTABLE, null);
+        }
+        if (isHibernateProxy(type)) {
+            // handle hibernate proxies
+            return of(type.getSuperclass());
+        }
+        return new TypeClassification(null, type);
+    }
+
+    private static boolean isHibernateProxy(Class<?> type) {
+        final String simpleName = type.getSimpleName();
+        if (simpleName.contains("_$$_") && simpleName.startsWith(type.getSuperclass().getSimpleName())) {
+            return true;
+        }
+        for (Class<?> iface : type.getInterfaces()) {
+            if ("org.hibernate.proxy.HibernateProxy".equals(iface.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map which doesn't keep its keys alive, the entries of the collected keys are dropped on the next update. The keys
+ * are compared by identity, or with equals, like the visited objects of the {@link TestcaseGenerator}. The values must
+ * not refer to their keys.
+ */
+final class WeakObjectMap<V> {
+
+    private final boolean byIdentity;
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final Map<Key, V> entries = new HashMap<>();
+
+    WeakObjectMap(boolean byIdentity) {
+        this.byIdentity = byIdentity;
+    }
+
+    V get(Object key) {
+        return entries.get(new Key(key, null));
+    }
+
+    boolean containsKey(Object key) {
+        return entries.containsKey(new Key(key, null));
+    }
+
+    void put(Object key, V value) {
+        expunge();
+        entries.put(new Key(key, queue), value);
+    }
+
+    int size() {
+        expunge();
+        return entries.size();
+    }
+
+    private void expunge() {
+        Reference<?> collected;
+        while ((collected = queue.poll()) != null) {
+            entries.remove(collected);
+        }
+    }
+
+    private final class Key extends WeakReference<Object> {
+        private final int hash;
+
+        Key(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = byIdentity ? System.identityHashCode(referent) : referent.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof WeakObjectMap.Key)) {
+                return false;
+            }
+            final Object referent = get();
+            final Object otherReferent = ((WeakObjectMap<?>.Key) other).get();
+            return referent != null && (byIdentity ? referent == otherReferent : referent.equals(otherReferent));
+        }
+    }
+}
@@ -15,39 +15,121 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class CollectionSourceCodeGenerator extends SourceCodeGenerator {
 
     private final Collection<SourceCodeGenerator> objects;
     private final boolean useSet;
+    private final String truncation;
 
     public CollectionSourceCodeGenerator(Collection<SourceCodeGenerator> objects, boolean useSet) {
+        this(objects, useSet, null);
+    }
+
+    /**
+     * @param truncation
+     *            the note about the elements which are left out by a capture limit, or null.
+     */
+    public CollectionSourceCodeGenerator(Collection<SourceCodeGenerator> objects, boolean useSet, String truncation) {
         this.objects = objects;
         this.useSet = useSet;
+        this.truncation = truncation;
+    }
+
+    /**
+     * @return why some of the elements are missing, like {@code 2 of 5 elements not captured, the depth limit of 3 is
+     *         reached}, or null if every capturable element is written.
+     */
+    public String getTruncation() {
+        return truncation;
+    }
+
+    @Override
+    public int estimateAccessSize() {
+        int size = 16;
+        for (SourceCodeGenerator scg : objects) {
+            size += 5 + scg.estimateAccessSize();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isUncheckedAccess() {
+        for (SourceCodeGenerator scg : objects) {
+            if (scg.isUncheckedAccess()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a method which builds the collection, with the elements added in chunks by helper methods, so none of
+     * the methods grows above maxMethodSize.
+     */
+    public void writeFactoryMethod(String methodName, String padding, int maxMethodSize, Appendable out) throws IOException {
+        final String type = useSet ? "HashSet" : "ArrayList";
+        final List<List<SourceCodeGenerator>> chunks = new ArrayList<>();
+        List<SourceCodeGenerator> chunk = new ArrayList<>();
+        int chunkSize = 0;
+        for (SourceCodeGenerator scg : objects) {
+            final int size = 5 + scg.estimateAccessSize();
+            if (chunkSize + size > maxMethodSize && !chunk.isEmpty()) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkSize = 0;
+            }
+            chunk.add(scg);
+            chunkSize += size;
+        }
+        chunks.add(chunk);
+        out.append(padding).append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+        // the result is converted to the parameter type of the setter, like a diamond
+        out.append(padding).append("private <T extends Collection<?>> T ").append(methodName).append("() {\n");
+        out.append(padding).append("    final ").append(type).append(" result = new ").append(type).append("();\n");
+        for (int i = 0; i < chunks.size(); i++) {
+            out.append(padding).append("    ").append(methodName).append('_').append(Integer.toString(i)).append("(result);\n");
+        }
+        out.append(padding).append("    return (T) result;\n");
+        out.append(padding).append("}\n");
+        for (int i = 0; i < chunks.size(); i++) {
+            out.append('\n');
+            out.append(padding).append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+            out.append(padding).append("private void ").append(methodName).append('_').append(Integer.toString(i)).append('(').append(type).append(" result) {\n");
+            for (SourceCodeGenerator scg : chunks.get(i)) {
+                out.append(padding).append("    result.add(");
+                scg.writeObjectAccess(out);
+                out.append(");\n");
+            }
+            out.append(padding).append("}\n");
+        }
     }
 
     @Override
-    public String getObjectAccess() {
+    public void writeObjectAccess(Appendable out) throws IOException {
         if (objects.isEmpty()) {
-            return useSet ? "new HashSet<>()" : "new ArrayList<>()";
+            out.append(useSet ? "new HashSet<>()" : "new ArrayList<>()");
+            return;
         }
-        final StringBuilder buf = new StringBuilder();
         if (useSet) {
-            buf.append("new HashSet<>(Arrays.asList(");
+            out.append("new HashSet<>(Arrays.asList(");
         } else {
-            buf.append("new ArrayList<>(Arrays.asList(");
+            out.append("new ArrayList<>(Arrays.asList(");
         }
         boolean follow = false;
         for (SourceCodeGenerator scg: objects) {
             if (follow) {
-                buf.append(", ");
+                out.append(", ");
             } else {
                 follow = true;
             }
-            buf.append(scg.getObjectAccess());
+            scg.writeObjectAccess(out);
         }
-        return buf.append("))").toString();
+        out.append("))");
     }
     
 }
@@ -15,6 +15,8 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
+
 public class EnumSourceCode extends SourceCodeGenerator {
 
     private final Enum<?> enumValue;
@@ -24,8 +26,13 @@ public class EnumSourceCode extends SourceCodeGenerator {
     }
 
     @Override
-    public String getObjectAccess() {
-        return enumValue.getDeclaringClass().getSimpleName() + '.' + enumValue.name();
+    public int estimateAccessSize() {
+        return 3;
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
+        out.append(enumValue.getDeclaringClass().getSimpleName()).append('.').append(enumValue.name());
     }
 
 }
@@ -15,17 +15,34 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
+
 public class FixSourceCodeGenerator extends SourceCodeGenerator {
 
     private final String initializer;
+    private final int accessSize;
 
     public FixSourceCodeGenerator(String initializer) {
+        this(initializer, 6);
+    }
+
+    /**
+     * @param accessSize
+     *            the estimated bytecode size of the expression, see {@link #estimateAccessSize()}.
+     */
+    public FixSourceCodeGenerator(String initializer, int accessSize) {
         this.initializer = initializer;
+        this.accessSize = accessSize;
+    }
+
+    @Override
+    public int estimateAccessSize() {
+        return accessSize;
     }
 
     @Override
-    public String getObjectAccess() {
-        return initializer;
+    public void writeObjectAccess(Appendable out) throws IOException {
+        out.append(initializer);
     }
 
 }
@@ -15,6 +15,7 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
 import java.time.Instant;
 
 public class InstantSourceCode extends SourceCodeGenerator {
@@ -26,8 +27,14 @@ public class InstantSourceCode extends SourceCodeGenerator {
     }
 
     @Override
-    public String getObjectAccess() {
-        return "java.time.Instant.ofEpochSecond(" + instant.getEpochSecond()+ ", " + instant.getNano() + ")";
+    public int estimateAccessSize() {
+        return 9;
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
+        out.append("java.time.Instant.ofEpochSecond(").append(Long.toString(instant.getEpochSecond())).append(", ")
+                .append(Integer.toString(instant.getNano())).append(')');
     }
 
 }
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.src;
+
+import java.io.IOException;
+
+/**
+ * Writes strings as Java string literals in a single pass, escaping the quotes, the backslashes, the control
+ * characters and the unpaired surrogates. The unchanged runs of characters are appended as they are, without copying.
+ *
+ * A string constant in a class file can't be longer than 65535 bytes in modified UTF-8, so the longer strings are
+ * split into literals which are concatenated with a {@link StringBuilder} at runtime - a {@code +} between literals
+ * would be folded back into a single constant by the compiler.
+ */
+public final class JavaLiteralEscaper {
+
+    // the class file allows 65535 bytes, but javac rejects the constants which reach it
+    static final int MAX_CONSTANT_BYTES = 65534;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JavaLiteralEscaper() {
+    }
+
+    public static void writeString(CharSequence value, Appendable out) throws IOException {
+        writeString(value, out, MAX_CONSTANT_BYTES);
+    }
+
+    static void writeString(CharSequence value, Appendable out, int maxConstantBytes) throws IOException {
+        final int length = value.length();
+        final boolean split = length * 3 > maxConstantBytes && encodedLength(value, 0, length) > maxConstantBytes;
+        if (split) {
+            out.append("new StringBuilder(").append(Integer.toString(length)).append(").append(");
+        }
+        out.append('"');
+        int bytes = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            final boolean pair = Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1));
+            if (split) {
+                // a surrogate pair is kept in the same literal, as the halves can't be written into the source alone
+                final int size = pair ? 6 : encodedLength(ch);
+                if (bytes + size > maxConstantBytes) {
+                    out.append(value, start, i).append("\").append(\"");
+                    start = i;
+                    bytes = 0;
+                }
+                bytes += size;
+            }
+            if (pair) {
+                i++;
+                continue;
+            }
+            final String escape = escape(ch);
+            if (escape != null) {
+                out.append(value, start, i).append(escape);
+                start = i + 1;
+            } else if (Character.isSurrogate(ch)) {
+                out.append(value, start, i).append("\\u").append(HEX[ch >> 12]).append(HEX[(ch >> 8) & 0xf]).append(HEX[(ch >> 4) & 0xf])
+                        .append(HEX[ch & 0xf]);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, length).append('"');
+        if (split) {
+            out.append(").toString()");
+        }
+    }
+
+    /**
+     * @return the estimated bytecode size of the expression written for the string.
+     */
+    public static int estimateSize(CharSequence value) {
+        final int length = value.length();
+        if (length * 3 <= MAX_CONSTANT_BYTES) {
+            return 3;
+        }
+        final int bytes = encodedLength(value, 0, length);
+        return bytes <= MAX_CONSTANT_BYTES ? 3 : 12 + 6 * (bytes / MAX_CONSTANT_BYTES + 1);
+    }
+
+    private static String escape(char ch) {
+        switch (ch) {
+        case '"':
+            return "\\\"";
+        case '\\':
+            return "\\\\";
+        case '\n':
+            return "\\n";
+        case '\r':
+            return "\\r";
+        case '\t':
+            return "\\t";
+        case '\b':
+            return "\\b";
+        case '\f':
+            return "\\f";
+        default:
+            if (ch < 0x20 || ch == 0x7f) {
+                // a \\u escape would be translated before the literal is parsed, so the octal form is used
+                return new String(new char[] { '\\', (char) ('0' + (ch >> 6)), (char) ('0' + ((ch >> 3) & 7)), (char) ('0' + (ch & 7)) });
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return the length of the characters in the modified UTF-8 encoding of the class files.
+     */
+    private static int encodedLength(CharSequence value, int start, int end) {
+        int bytes = 0;
+        for (int i = start; i < end; i++) {
+            bytes += encodedLength(value.charAt(i));
+        }
+        return bytes;
+    }
+
+    private static int encodedLength(char ch) {
+        if (ch != 0 && ch < 0x80) {
+            return 1;
+        }
+        return ch < 0x800 ? 2 : 3;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
 import java.time.LocalDate;
 
 public class LocalDateSourceCode extends SourceCodeGenerator {
@@ -26,8 +27,15 @@ public class LocalDateSourceCode extends SourceCodeGenerator {
     }
 
     @Override
-    public String getObjectAccess() {
-        return "LocalDate.of(" + localDate.getYear() + ',' + localDate.getMonthValue() + ',' + localDate.getDayOfMonth() + ')';
+    public int estimateAccessSize() {
+        return 12;
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
+        out.append("LocalDate.of(").append(Integer.toString(localDate.getYear())).append(',')
+                .append(Integer.toString(localDate.getMonthValue())).append(',')
+                .append(Integer.toString(localDate.getDayOfMonth())).append(')');
     }
 
 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.src;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Writes a map as an instance of the captured map class, with the entries in the original iteration order, see
+ * {@link #getMapType(Map)}.
+ *
+ * The small maps are written as a single expression, which collects an array of the entries into a new map, through
+ * a raw type, so the initializers using it suppress the unchecked warnings. The larger ones are built by a generic
+ * factory method, with the entries put in chunks by helper methods, so none of the methods grows above the method
+ * size limit.
+ */
+public class MapSourceCodeGenerator extends SourceCodeGenerator {
+
+    /**
+     * Written for the null keys and values.
+     */
+    public static final SourceCodeGenerator NULL = new FixSourceCodeGenerator("null", 1);
+
+    private final String mapType;
+    private final List<SourceCodeGenerator> keys;
+    private final List<SourceCodeGenerator> values;
+
+    /**
+     * @param mapType
+     *            the simple name of the map class which is created, see {@link #getMapType(Map)}.
+     */
+    public MapSourceCodeGenerator(String mapType, List<SourceCodeGenerator> keys, List<SourceCodeGenerator> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("Got " + keys.size() + " keys for " + values.size() + " values");
+        }
+        this.mapType = mapType;
+        this.keys = new ArrayList<>(keys);
+        this.values = new ArrayList<>(values);
+    }
+
+    /**
+     * @return the name of the class which is created for the map: the class of the map, or its closest public
+     *         superclass, if it has a public no-arg constructor. The maps which are only visible through the
+     *         {@link Map} interface, like the unmodifiable ones, are created as a {@code LinkedHashMap}, or a
+     *         {@code TreeMap} if they are sorted. Null if the map can't be created: it is sorted with a comparator, or
+     *         it is public and has no no-arg constructor, like an {@code EnumMap}.
+     */
+    public static String getMapType(Map<?, ?> map) {
+        if (map instanceof SortedMap && ((SortedMap<?, ?>) map).comparator() != null) {
+            return null;
+        }
+        for (Class<?> type = map.getClass(); type != null && Map.class.isAssignableFrom(type); type = type.getSuperclass()) {
+            if (isPublic(type)) {
+                if (Modifier.isAbstract(type.getModifiers())) {
+                    break;
+                }
+                return hasPublicConstructor(type) ? getTypeName(type) : null;
+            }
+        }
+        return map instanceof SortedMap ? "TreeMap" : "LinkedHashMap";
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            if (!Modifier.isPublic(current.getModifiers()) || current.isAnonymousClass() || current.isLocalClass()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasPublicConstructor(Class<?> type) {
+        try {
+            type.getConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the simple name of the java.util classes, which are imported by the fixtures, and the canonical name of
+     *         the others.
+     */
+    private static String getTypeName(Class<?> type) {
+        return type.getPackage() != null && "java.util".equals(type.getPackage().getName()) ? type.getSimpleName() : type.getCanonicalName();
+    }
+
+    public String getMapType() {
+        return mapType;
+    }
+
+    @Override
+    public boolean isUncheckedAccess() {
+        return !keys.isEmpty();
+    }
+
+    @Override
+    public int estimateAccessSize() {
+        int size = 30;
+        for (int i = 0; i < keys.size(); i++) {
+            size += 14 + keys.get(i).estimateAccessSize() + values.get(i).estimateAccessSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writes a method which builds the map, with the entries put in chunks by helper methods, so none of the methods
+     * grows above maxMethodSize. The return type of the method is inferred from the setter parameter, so calling it
+     * is not an unchecked conversion.
+     */
+    public void writeFactoryMethod(String methodName, String padding, int maxMethodSize, Appendable out) throws IOException {
+        final List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> chunk = new ArrayList<>();
+        int chunkSize = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            final int size = 6 + keys.get(i).estimateAccessSize() + values.get(i).estimateAccessSize();
+            if (chunkSize + size > maxMethodSize && !chunk.isEmpty()) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkSize = 0;
+            }
+            chunk.add(i);
+            chunkSize += size;
+        }
+        chunks.add(chunk);
+        out.append(padding).append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+        out.append(padding).append("private <T extends Map<?, ?>> T ").append(methodName).append("() {\n");
+        out.append(padding).append("    final ").append(mapType).append(" result = new ").append(mapType).append("();\n");
+        for (int i = 0; i < chunks.size(); i++) {
+            out.append(padding).append("    ").append(methodName).append('_').append(Integer.toString(i)).append("(result);\n");
+        }
+        out.append(padding).append("    return (T) result;\n");
+        out.append(padding).append("}\n");
+        for (int i = 0; i < chunks.size(); i++) {
+            out.append('\n');
+            out.append(padding).append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+            out.append(padding).append("private void ").append(methodName).append('_').append(Integer.toString(i)).append('(').append(mapType).append(" result) {\n");
+            for (int entry : chunks.get(i)) {
+                out.append(padding).append("    result.put(");
+                keys.get(entry).writeObjectAccess(out);
+                out.append(", ");
+                values.get(entry).writeObjectAccess(out);
+                out.append(");\n");
+            }
+            out.append(padding).append("}\n");
+        }
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
+        if (keys.isEmpty()) {
+            out.append("new ").append(mapType).append("<>()");
+            return;
+        }
+        // a cast context, so the map type is inferred from the constructor, and not from the setter parameter
+        out.append('(').append(mapType).append(") java.util.stream.Stream.of(new Object[][] {");
+        for (int i = 0; i < keys.size(); i++) {
+            out.append(i == 0 ? " { " : ", { ");
+            keys.get(i).writeObjectAccess(out);
+            out.append(", ");
+            values.get(i).writeObjectAccess(out);
+            out.append(" }");
+        }
+        out.append(" }).collect(").append(mapType).append("::new, (map, entry) -> map.put(entry[0], entry[1]), Map::putAll)");
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 
 public class NumberSourceCode extends SourceCodeGenerator {
@@ -26,32 +27,37 @@ public class NumberSourceCode extends SourceCodeGenerator {
     }
 
     @Override
-    public String getObjectAccess() {
+    public int estimateAccessSize() {
+        return number instanceof BigDecimal ? 10 : 6;
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
         if (number instanceof BigDecimal) {
             BigDecimal bd = ((BigDecimal)number);
             try {
                 long value = bd.longValueExact();
                 if (value == 0) {
-                    return "BigDecimal.ZERO";
-                }
-                if (value == 1) {
-                    return "BigDecimal.ONE";
-                }
-                if (value == 10) {
-                    return "BigDecimal.TEN";
+                    out.append("BigDecimal.ZERO");
+                } else if (value == 1) {
+                    out.append("BigDecimal.ONE");
+                } else if (value == 10) {
+                    out.append("BigDecimal.TEN");
+                } else {
+                    out.append("BigDecimal.valueOf(").append(Long.toString(value)).append(')');
                 }
-                return "BigDecimal.valueOf(" + value + ")";
             } catch (ArithmeticException ae) {
-                return "new BigDecimal(\"" + ((BigDecimal)number).toString() + "\")";
+                out.append("new BigDecimal(\"").append(bd.toString()).append("\")");
             }
         } else if (number instanceof Long) {
-            return number.toString() + "l";
+            out.append(number.toString()).append('l');
         } else if (number instanceof Float) {
-            return number.toString() + "f";
+            out.append(number.toString()).append('f');
         } else if (number instanceof Double) {
-            return number.toString() + "d";
+            out.append(number.toString()).append('d');
+        } else {
+            out.append(number.toString());
         }
-        return number.toString();
     }
 
 }
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2018 Zsombor Gegesy (gzsombor@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gzsombor.testcasegen.src;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Writes a primitive array without boxing the elements. The small arrays are written as an array initializer, the
+ * larger ones as a Base64 string literal, which is decoded when the fixture is used: a {@code byte[]} directly, the
+ * other numeric arrays through a big-endian buffer view, and a {@code char[]} is written as a string. The bytecode of
+ * an array initializer grows by each element, while a string constant only takes a few bytes of code.
+ *
+ * There is no buffer view for the {@code boolean[]} arrays, they are written as a bitmap, the lowest bit of the first
+ * byte is the first element, and the bits are unpacked in a loop by a lambda, so the access stays an expression.
+ */
+public class PrimitiveArraySourceCode extends SourceCodeGenerator {
+
+    static final int MAX_INLINE_LENGTH = 32;
+
+    private final Object array;
+    private final Class<?> componentType;
+    private final int length;
+
+    public PrimitiveArraySourceCode(Object array) {
+        this.array = array;
+        this.componentType = array.getClass().getComponentType();
+        this.length = Array.getLength(array);
+        if (!componentType.isPrimitive()) {
+            throw new IllegalArgumentException("Not a primitive array: " + array.getClass().getName());
+        }
+    }
+
+    private boolean isEncoded() {
+        return length > MAX_INLINE_LENGTH;
+    }
+
+    @Override
+    public int estimateAccessSize() {
+        if (!isEncoded()) {
+            return 6 + 7 * length;
+        }
+        if (componentType == char.class) {
+            return 4 + JavaLiteralEscaper.estimateSize(new String((char[]) array));
+        }
+        // the Base64 text is ASCII, so its estimate only depends on the length
+        final int byteLength = componentType == boolean.class ? (length + 7) / 8 : length * byteSize();
+        final int encodedLength = (byteLength + 2) / 3 * 4;
+        final int literalSize = encodedLength <= JavaLiteralEscaper.MAX_CONSTANT_BYTES ? 3
+                : 12 + 6 * (encodedLength / JavaLiteralEscaper.MAX_CONSTANT_BYTES + 1);
+        return 30 + literalSize;
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
+        if (!isEncoded()) {
+            writeInitializer(out);
+        } else if (componentType == char.class) {
+            JavaLiteralEscaper.writeString(new String((char[]) array), out);
+            out.append(".toCharArray()");
+        } else if (componentType == byte.class) {
+            writeDecoding((byte[]) array, out);
+        } else if (componentType == boolean.class) {
+            // the names can't shadow the local variables of the enclosing method
+            out.append("((java.util.function.Function<byte[], boolean[]>) bits$ -> { final boolean[] values$ = new boolean[")
+                    .append(Integer.toString(length)).append("]; for (int i$ = 0; i$ < values$.length; i$++) { ")
+                    .append("values$[i$] = (bits$[i$ >> 3] & (1 << (i$ & 7))) != 0; } return values$; }).apply(");
+            writeDecoding(toBitmap((boolean[]) array), out);
+            out.append(')');
+        } else {
+            final String bufferType = "java.nio." + capitalize(componentType.getName()) + "Buffer";
+            out.append(bufferType).append(".allocate(").append(Integer.toString(length)).append(").put(java.nio.ByteBuffer.wrap(");
+            writeDecoding(toBytes(), out);
+            out.append(").as").append(capitalize(componentType.getName())).append("Buffer()).array()");
+        }
+    }
+
+    private void writeInitializer(Appendable out) throws IOException {
+        out.append("new ").append(componentType.getName()).append("[] {");
+        for (int i = 0; i < length; i++) {
+            out.append(i == 0 ? " " : ", ");
+            writeElement(Array.get(array, i), out);
+        }
+        out.append(length == 0 ? "}" : " }");
+    }
+
+    private void writeElement(Object element, Appendable out) throws IOException {
+        if (element instanceof Character) {
+            // an int constant is narrowed to char in an array initializer
+            out.append(Integer.toString((Character) element));
+        } else if (element instanceof Long) {
+            out.append(element.toString()).append('l');
+        } else if (element instanceof Float) {
+            final float value = (Float) element;
+            if (Float.isNaN(value)) {
+                out.append("Float.NaN");
+            } else if (Float.isInfinite(value)) {
+                out.append(value > 0 ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY");
+            } else {
+                out.append(element.toString()).append('f');
+            }
+        } else if (element instanceof Double) {
+            final double value = (Double) element;
+            if (Double.isNaN(value)) {
+                out.append("Double.NaN");
+            } else if (Double.isInfinite(value)) {
+                out.append(value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY");
+            } else {
+                out.append(element.toString()).append('d');
+            }
+        } else {
+            out.append(element.toString());
+        }
+    }
+
+    private static void writeDecoding(byte[] bytes, Appendable out) throws IOException {
+        out.append("java.util.Base64.getDecoder().decode(");
+        JavaLiteralEscaper.writeString(Base64.getEncoder().encodeToString(bytes), out);
+        out.append(')');
+    }
+
+    private int byteSize() {
+        if (componentType == byte.class) {
+            return 1;
+        } else if (componentType == short.class || componentType == char.class) {
+            return 2;
+        } else if (componentType == int.class || componentType == float.class) {
+            return 4;
+        }
+        return 8;
+    }
+
+    private static byte[] toBitmap(boolean[] values) {
+        final byte[] bitmap = new byte[(values.length + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i]) {
+                bitmap[i >> 3] |= 1 << (i & 7);
+            }
+        }
+        return bitmap;
+    }
+
+    private byte[] toBytes() {
+        final ByteBuffer buffer = ByteBuffer.allocate(length * byteSize());
+        if (componentType == short.class) {
+            buffer.asShortBuffer().put((short[]) array);
+        } else if (componentType == int.class) {
+            buffer.asIntBuffer().put((int[]) array);
+        } else if (componentType == long.class) {
+            buffer.asLongBuffer().put((long[]) array);
+        } else if (componentType == float.class) {
+            buffer.asFloatBuffer().put((float[]) array);
+        } else if (componentType == double.class) {
+            buffer.asDoubleBuffer().put((double[]) array);
+        }
+        return buffer.array();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+}
@@ -15,19 +15,42 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
 
 import io.github.gzsombor.testcasegen.TestcaseGenerator;
 
+/**
+ * Writes the code of a captured value. The subclasses override {@link #writeObjectAccess(Appendable)}, and
+ * {@link #writeInitializer(TestcaseGenerator, String, Appendable)} if they have an initializer - or the older
+ * {@link #getObjectAccess()} and {@link #getInitializer(TestcaseGenerator, String)}, which are used by the default
+ * implementations of the write methods.
+ */
 public abstract class SourceCodeGenerator {
 
+    /**
+     * The classes which override the write methods, the string methods are built on them.
+     */
+    private static final ClassValue<boolean[]> WRITE_METHODS = new ClassValue<boolean[]>() {
+        @Override
+        protected boolean[] computeValue(Class<?> type) {
+            return new boolean[] { overrides(type, "writeObjectAccess", Appendable.class),
+                    overrides(type, "writeInitializer", TestcaseGenerator.class, String.class, Appendable.class) };
+        }
+    };
+
     protected boolean publicFlag;
 
     public void setPublicFlag(boolean publicFlag) {
         this.publicFlag = publicFlag;
     }
 
+    public boolean isPublicFlag() {
+        return publicFlag;
+    }
+
     public String getCacheVariableDeclaration() {
         return null;
     }
@@ -44,9 +67,81 @@ public abstract class SourceCodeGenerator {
         return false;
     }
 
+    /**
+     * Writes the method which creates and caches the object, if {@link #isHasInitializer()}.
+     */
+    public void writeInitializer(TestcaseGenerator ctx, String padding, Appendable out) throws IOException {
+        final String initializer = getInitializer(ctx, padding);
+        if (initializer != null) {
+            out.append(initializer);
+        }
+    }
+
+    /**
+     * Writes the expression which evaluates to the object.
+     */
+    public void writeObjectAccess(Appendable out) throws IOException {
+        out.append(getObjectAccess());
+    }
+
+    /**
+     * @return true if the access expression contains a raw type, which is converted to the parameter type of the
+     *         setter with an unchecked warning.
+     */
+    public boolean isUncheckedAccess() {
+        return false;
+    }
+
+    /**
+     * @return the estimated size of the bytecode of the access expression, used to split the generated code, so the
+     *         methods stay below the JVM limits.
+     */
+    public int estimateAccessSize() {
+        return 6;
+    }
+
+    /**
+     * @return the estimated size of the bytecode of the initializer method and its helper methods.
+     */
+    public int estimateInitializerSize() {
+        return 0;
+    }
+
     public String getInitializer(TestcaseGenerator ctx, String padding) {
-        return null;
+        if (!isHasInitializer() || !WRITE_METHODS.get(getClass())[1]) {
+            return null;
+        }
+        final StringBuilder out = new StringBuilder();
+        try {
+            writeInitializer(ctx, padding, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public String getObjectAccess() {
+        if (!WRITE_METHODS.get(getClass())[0]) {
+            throw new AbstractMethodError(getClass().getName() + " overrides neither writeObjectAccess nor getObjectAccess");
+        }
+        final StringBuilder out = new StringBuilder();
+        try {
+            writeObjectAccess(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
     }
 
-    public abstract String getObjectAccess();
+    private static boolean overrides(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> current = type; current != SourceCodeGenerator.class; current = current.getSuperclass()) {
+            try {
+                current.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // declared by a superclass
+            }
+        }
+        return false;
+    }
 }
@@ -15,6 +15,8 @@
  */
 package io.github.gzsombor.testcasegen.src;
 
+import java.io.IOException;
+
 public class StringSourceCode extends SourceCodeGenerator {
 
     private final String value;
@@ -24,8 +26,13 @@ public class StringSourceCode extends SourceCodeGenerator {
     }
 
     @Override
-    public String getObjectAccess() {
-        return "\"" + value.replaceAll("\"", "\\\"") + "\"";
+    public int estimateAccessSize() {
+        return JavaLiteralEscaper.estimateSize(value);
+    }
+
+    @Override
+    public void writeObjectAccess(Appendable out) throws IOException {
+        JavaLiteralEscaper.writeString(value, out);
     }
 
 }
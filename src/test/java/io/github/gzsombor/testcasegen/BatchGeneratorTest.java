@@ -0,0 +1,211 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+public class BatchGeneratorTest extends TestCase {
+
+    public enum Status {
+        NEW, DONE
+    }
+
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+        private Status status = Status.NEW;
+        private List<String> tags = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    private Path directory;
+    private Path captures;
+    private Path fixtures;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("testcasegen");
+        captures = Files.createDirectory(directory.resolve("captures"));
+        fixtures = directory.resolve("fixtures");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static Item item(String name) {
+        final Item item = new Item();
+        item.setName(name);
+        item.getTags().add(name);
+        return item;
+    }
+
+    private void capture(String fileName, Object object) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(captures.resolve(fileName)))) {
+            out.writeObject(object);
+        }
+    }
+
+    private void capture(String fileName, String name) throws IOException {
+        capture(fileName, item(name));
+    }
+
+    private BatchGenerator.Result generate() throws Exception {
+        return generate("");
+    }
+
+    private BatchGenerator.Result generate(String packageName) throws Exception {
+        final BatchGenerator batch = new BatchGenerator(new TestcaseGeneratorConfig(), captures, fixtures);
+        batch.setThreads(2);
+        batch.setPackageName(packageName);
+        batch.setAllowedClasses(BatchGeneratorTest.class.getPackage().getName() + ".*");
+        return batch.run();
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), "UTF-8");
+    }
+
+    public void testToClassName() {
+        assertEquals("Order42Fixture", BatchGenerator.toClassName("order-42.snapshot"));
+        assertEquals("Order42Fixture", BatchGenerator.toClassName("order_42.ser"));
+        assertEquals("Capture42Fixture", BatchGenerator.toClassName("42.ser"));
+    }
+
+    public void testIsAllowed() {
+        final List<String> patterns = Arrays.asList("java.util.*", "com.example.**", "org.example.Item");
+        assertTrue(BatchGenerator.isAllowed("java.util.ArrayList", patterns));
+        assertTrue(BatchGenerator.isAllowed("[Ljava.util.ArrayList;", patterns));
+        assertTrue(BatchGenerator.isAllowed("[[I", patterns));
+        assertFalse(BatchGenerator.isAllowed("java.util.concurrent.ConcurrentHashMap", patterns));
+        assertTrue(BatchGenerator.isAllowed("com.example.Order", patterns));
+        assertTrue(BatchGenerator.isAllowed("com.example.order.Line$Detail", patterns));
+        assertFalse(BatchGenerator.isAllowed("com.examples.Order", patterns));
+        assertTrue(BatchGenerator.isAllowed("org.example.Item", patterns));
+        assertFalse(BatchGenerator.isAllowed("org.example.Items", patterns));
+    }
+
+    public void testGeneratedFixturesCompile() throws Exception {
+        final Item item = item("item");
+        item.setStatus(Status.DONE);
+        capture("item.ser", item);
+        final TestcaseGenerator generator = new TestcaseGeneratorConfig().startIntrospect();
+        generator.introspect(item("snapshot"));
+        new SnapshotWriter(generator).write(captures.resolve("item-snapshot.snapshot"));
+        assertEquals(2, generate("com.example.fixtures").getGenerated().size());
+
+        final Path directory = fixtures.resolve("com/example/fixtures");
+        final String code = read(directory.resolve("ItemFixture.java"));
+        assertTrue(code, code.startsWith("package com.example.fixtures;\n"));
+        assertTrue(code, code.contains("import io.github.gzsombor.testcasegen.BatchGeneratorTest.Item;\n"));
+        assertTrue(code, code.contains("import io.github.gzsombor.testcasegen.BatchGeneratorTest.Status;\n"));
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        try (CompiledClasses classes = CompiledClasses.compile("ItemFixture", code)) {
+            final Object fixture = classes.newInstance("com.example.fixtures.ItemFixture");
+            final Item copy = (Item) fixture.getClass().getMethod("getItem0").invoke(fixture);
+            assertEquals("item", copy.getName());
+            assertEquals(Status.DONE, copy.getStatus());
+            assertEquals(Arrays.asList("item"), copy.getTags());
+        }
+        try (CompiledClasses classes = CompiledClasses.compile("ItemSnapshotFixture", read(directory.resolve("ItemSnapshotFixture.java")))) {
+            final Object fixture = classes.newInstance("com.example.fixtures.ItemSnapshotFixture");
+            final Item copy = (Item) fixture.getClass().getMethod("getItem0").invoke(fixture);
+            assertEquals("snapshot", copy.getName());
+            assertEquals(Status.NEW, copy.getStatus());
+        }
+    }
+
+    public void testRejectsTheClassesWhichAreNotAllowed() throws Exception {
+        capture("item.ser", item("item"));
+        final BatchGenerator batch = new BatchGenerator(new TestcaseGeneratorConfig(), captures, fixtures);
+        final BatchGenerator.Result result = batch.run();
+        assertTrue(result.getFailed().get("item.ser") instanceof InvalidClassException);
+        assertFalse(Files.exists(fixtures.resolve("ItemFixture.java")));
+    }
+
+    public void testSkipsTheUnchangedCaptures() throws Exception {
+        capture("first.ser", "one");
+        capture("second.ser", "two");
+        assertEquals(Arrays.asList("first.ser", "second.ser"), Arrays.asList(generate().getGenerated().keySet().toArray()));
+        assertTrue(read(fixtures.resolve("FirstFixture.java")).contains("\"one\""));
+
+        capture("second.ser", "changed");
+        final BatchGenerator.Result result = generate();
+        assertEquals(result.toString(), "[second.ser]", result.getGenerated().keySet().toString());
+        assertEquals("[first.ser]", result.getSkipped().keySet().toString());
+        assertTrue(read(fixtures.resolve("SecondFixture.java")).contains("\"changed\""));
+
+        Files.delete(fixtures.resolve("FirstFixture.java"));
+        assertEquals("[first.ser]", generate().getGenerated().keySet().toString());
+    }
+
+    public void testRejectsTheCapturesOfTheSameClass() throws Exception {
+        capture("order-42.ser", "one");
+        capture("order_42.ser", "two");
+        capture("other.ser", "three");
+        final BatchGenerator.Result result = generate();
+        assertEquals("[other.ser]", result.getGenerated().keySet().toString());
+        assertEquals("[order-42.ser, order_42.ser]", result.getFailed().keySet().toString());
+        assertTrue(result.getFailed().get("order-42.ser").getMessage().contains("Order42Fixture.java"));
+        assertFalse(Files.exists(fixtures.resolve("Order42Fixture.java")));
+    }
+
+    public void testRemovesTheFixturesOfTheDeletedCaptures() throws Exception {
+        capture("first.ser", "one");
+        capture("second.ser", "two");
+        generate();
+        assertTrue(Files.exists(captures.resolve(".SecondFixture.fingerprints")));
+
+        Files.delete(captures.resolve("second.ser"));
+        final BatchGenerator.Result result = generate();
+        assertEquals("[second.ser]", result.getRemoved().keySet().toString());
+        assertFalse(Files.exists(fixtures.resolve("SecondFixture.java")));
+        assertFalse(Files.exists(captures.resolve(".SecondFixture.fingerprints")));
+        assertTrue(Files.exists(fixtures.resolve("FirstFixture.java")));
+
+        // renamed to the same class
+        Files.move(captures.resolve("first.ser"), captures.resolve("first_.ser"));
+        final BatchGenerator.Result renamed = generate();
+        assertTrue(renamed.getRemoved().isEmpty());
+        assertTrue(Files.exists(fixtures.resolve("FirstFixture.java")));
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.gzsombor.testcasegen;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class CaptureLimitsTest extends TestCase {
+
+    public static class Node {
+        private String name;
+        private Node next;
+        private List<Node> children = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Node getNext() {
+            return next;
+        }
+
+        public void setNext(Node next) {
+            this.next = next;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<Node> children) {
+            this.children = children;
+        }
+    }
+
+    static Node node(String name, Node... children) {
+        final Node node = new Node();
+        node.setName(name);
+        for (Node child : children) {
+            node.getChildren().add(child);
+        }
+        return node;
+    }
+
+    private static String capture(TestcaseGeneratorConfig config, Object root) {
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(root);
+        return TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+    }
+
+    public void testDepthLimit() {
+        final Node root = node("root");
+        root.setNext(node("first"));
+        root.getNext().setNext(node("second"));
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setMaxDepth(1);
+        final String code = capture(config, root);
+        assertTrue(code, code.contains("// Next not captured, the depth limit of 1 is reached"));
+        assertTrue(code, code.contains("\"first\""));
+        assertFalse(code, code.contains("\"second\""));
+    }
+
+    public void testNodeLimitNotesTheMissingElements() throws Exception {
+        final Node root = node("root", node("a"), node("b"), node("c"), node("d"), node("e"));
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setMaxNodes(3);
+        final String code = capture(config, root);
+        assertTrue(code, code.contains("// Children 3 of 5 elements not captured, the limit of 3 objects is reached"));
+        assertTrue(code, code.contains("Arrays.asList(getNode1(), getNode2())"));
+
+        if (CompiledClasses.isCompilerAvailable()) {
+            try (CompiledClasses classes = CompiledClasses.compile("Fixture",
+                    "import java.util.*;\nimport io.github.gzsombor.testcasegen.CaptureLimitsTest.*;\n\n" + code)) {
+                final Object fixture = classes.newInstance("Fixture");
+                final Node copy = (Node) fixture.getClass().getMethod("getNode0").invoke(fixture);
+                assertEquals(2, copy.getChildren().size());
+            }
+        }
+    }
+
+    public void testCaptureTimeout() {
+        final Node root = node("root");
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setCaptureTimeout(Duration.ZERO);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(root);
+        assertTrue(generator.getIntrospectionResults().isEmpty());
+        assertEquals("not captured, the capture timeout of PT0S is reached", generator.getTruncation(root));
+    }
+
+    public void testBudgetWalkNumbersTheObjectsBreadthFirst() {
+        final Node root = node("root", node("a", node("a1")), node("b"));
+        // the unbounded walk goes depth first, from the last referred object
+        final String unbounded = capture(new TestcaseGeneratorConfig(), root);
+        assertTrue(unbounded, unbounded.contains("Arrays.asList(getNode2(), getNode1())"));
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setMaxNodes(100);
+        final String budget = capture(config, root);
+        assertTrue(budget, budget.contains("Arrays.asList(getNode1(), getNode2())"));
+    }
+
+    private static List<Integer> range(int size) {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    public void testHeadAndTailSampling() {
+        assertEquals(Arrays.asList(0, 1, 2), CollectionSampling.HEAD.sample(range(10), 3));
+        assertEquals(Arrays.asList(7, 8, 9), CollectionSampling.TAIL.sample(range(10), 3));
+        assertEquals(range(3), CollectionSampling.TAIL.sample(range(3), 5));
+    }
+
+    public void testRandomSamplingIsSeededByTheSize() {
+        final List<Object> sample = CollectionSampling.RANDOM.sample(range(100), 10);
+        assertEquals(10, sample.size());
+        assertEquals(sample, CollectionSampling.RANDOM.sample(range(100), 10));
+        // the elements keep their order
+        final List<Object> sorted = new ArrayList<>(sample);
+        sorted.sort(null);
+        assertEquals(sorted, sample);
+        // a collection of the same size keeps the elements at the same positions
+        final List<Integer> shifted = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            shifted.add(i + 1000);
+        }
+        final List<Object> shiftedSample = CollectionSampling.RANDOM.sample(shifted, 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals((Integer) sample.get(i) + 1000, shiftedSample.get(i));
+        }
+        assertFalse(sample.equals(CollectionSampling.RANDOM.sample(range(101), 10)));
+    }
+
+    public void testCollectionSizeLimit() {
+        final Node root = node("root", node("a"), node("b"), node("c"), node("d"));
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setMaxCollectionSize(2, CollectionSampling.TAIL);
+        final String code = capture(config, root);
+        assertTrue(code, code.contains("// Children truncated to 2 of 4 elements (TAIL)"));
+        assertTrue(code, code.contains("\"c\""));
+        assertTrue(code, code.contains("\"d\""));
+        assertFalse(code, code.contains("\"a\""));
+        // the walk stays depth first
+        assertTrue(code, code.contains("Arrays.asList(getNode2(), getNode1())"));
+    }
+}
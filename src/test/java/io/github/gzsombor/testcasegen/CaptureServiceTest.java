@@ -0,0 +1,131 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class CaptureServiceTest extends TestCase {
+
+    public static class Payload {
+        private String name;
+
+        public Payload(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Collects the capture names, and blocks the workers until it is opened.
+     */
+    private static final class GatedSink implements CaptureSink {
+        final List<String> names = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public void write(String name, TestcaseGenerator generator) throws IOException {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            names.add(name);
+        }
+    }
+
+    public void testDropsTheSubmissionsWhenTheQueueIsFull() throws Exception {
+        final GatedSink sink = new GatedSink();
+        final CaptureService service = new CaptureService(new TestcaseGeneratorConfig(), sink, 1, 1);
+        assertTrue(service.submit("first", new Payload("first")));
+        assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+        assertTrue(service.submit("second", new Payload("second")));
+        assertFalse(service.submit("third", new Payload("third")));
+        assertEquals(1, service.getQueueDepth());
+        assertEquals(1, service.getDropped());
+
+        sink.gate.countDown();
+        service.close();
+        assertEquals(2, service.getCaptured());
+        assertEquals(3, service.getSubmitted());
+        assertEquals(2, sink.names.size());
+    }
+
+    public void testCloseWritesTheQueuedSubmissions() throws Exception {
+        final GatedSink sink = new GatedSink();
+        final CaptureService service = new CaptureService(new TestcaseGeneratorConfig(), sink, 10, 2);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.submit("payload", new Payload("payload" + i)));
+        }
+        sink.gate.countDown();
+        service.close();
+        assertEquals(5, service.getCaptured());
+        assertEquals(0, service.getQueueDepth());
+        assertEquals(5, sink.names.size());
+        assertFalse(service.submit("late", new Payload("late")));
+        assertEquals(1, service.getDropped());
+    }
+
+    public void testCloseKeepsTheInterruptFlag() throws Exception {
+        final GatedSink sink = new GatedSink();
+        final CaptureService service = new CaptureService(new TestcaseGeneratorConfig(), sink, 1, 1);
+        service.submit("first", new Payload("first"));
+        assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+        Thread.currentThread().interrupt();
+        service.close();
+        assertTrue(Thread.interrupted());
+
+        sink.gate.countDown();
+        service.close();
+        assertEquals(1, service.getCaptured());
+    }
+
+    public void testSinkFailuresAreCounted() throws Exception {
+        final IOException failure = new IOException("disk full");
+        final List<String> names = new CopyOnWriteArrayList<>();
+        final CaptureService service = new CaptureService(new TestcaseGeneratorConfig(), (name, generator) -> {
+            if (names.isEmpty()) {
+                names.add(name);
+                throw failure;
+            }
+            names.add(name);
+        }, 10, 1);
+        service.submit("first", new Payload("first"));
+        service.submit("second", new Payload("second"));
+        service.close();
+        assertEquals(1, service.getFailed());
+        assertSame(failure, service.getLastFailure());
+        assertEquals(1, service.getCaptured());
+        assertEquals(2, names.size());
+    }
+
+    public void testWorkersSurviveErrors() throws Exception {
+        final StackOverflowError failure = new StackOverflowError("too deep");
+        final List<String> names = new CopyOnWriteArrayList<>();
+        final CaptureService service = new CaptureService(new TestcaseGeneratorConfig(), (name, generator) -> {
+            names.add(name);
+            if (names.size() == 1) {
+                throw failure;
+            }
+        }, 10, 1);
+        service.submit("first", new Payload("first"));
+        service.submit("second", new Payload("second"));
+        service.close();
+        assertEquals(1, service.getFailed());
+        assertSame(failure, service.getLastFailure());
+        assertEquals(1, service.getCaptured());
+        assertEquals(2, names.size());
+    }
+}
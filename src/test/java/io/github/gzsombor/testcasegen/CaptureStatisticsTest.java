@@ -0,0 +1,63 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.gzsombor.testcasegen.CaptureLimitsTest.Node;
+import junit.framework.TestCase;
+
+public class CaptureStatisticsTest extends TestCase {
+
+    public void testCountsTheObjectsAndTheGetterCalls() throws UnsupportedEncodingException {
+        final List<Class<?>> discovered = new ArrayList<>();
+        final CaptureStatistics statistics = new CaptureStatistics() {
+            @Override
+            public void typeDiscovered(Class<?> type) {
+                discovered.add(type);
+            }
+        };
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setCaptureListener(statistics);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(CaptureLimitsTest.node("root", CaptureLimitsTest.node("a"), CaptureLimitsTest.node("b")));
+        final String code = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+
+        assertTrue(discovered.toString(), discovered.contains(Node.class));
+        assertEquals(3, statistics.getCapturedObjects());
+        // every node has three properties
+        assertEquals(9, statistics.getPropertyReads());
+        assertEquals(code.length(), statistics.getEmittedCharacters());
+
+        final List<CaptureStatistics.Timing> types = statistics.getTypeTimings();
+        assertEquals(1, types.size());
+        assertEquals(Node.class.getName(), types.get(0).getName());
+        assertEquals(3, types.get(0).getCount());
+        assertTrue(types.get(0).getMaxNanos() <= types.get(0).getTotalNanos());
+
+        final List<CaptureStatistics.Timing> properties = statistics.getPropertyTimings();
+        assertEquals(3, properties.size());
+        for (int i = 0; i < properties.size(); i++) {
+            final CaptureStatistics.Timing property = properties.get(i);
+            assertTrue(property.getName(), property.getName().startsWith(Node.class.getName() + '.'));
+            assertEquals(3, property.getCount());
+            if (i > 0) {
+                // the most expensive first
+                assertTrue(properties.get(i - 1).getTotalNanos() >= property.getTotalNanos());
+            }
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        statistics.printSummary(new PrintStream(output, true, "UTF-8"), 2);
+        final String[] lines = output.toString("UTF-8").split("\\R");
+        assertEquals("Captured 3 objects with 9 getter calls, emitted " + code.length() + " characters", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith("Type"));
+        assertTrue(lines[2], lines[2].startsWith(Node.class.getName() + ' '));
+        assertTrue(lines[3], lines[3].startsWith("Slowest getters"));
+        // the getters are limited to the two slowest
+        assertEquals(6, lines.length);
+        assertTrue(lines[4], lines[4].startsWith(properties.get(0).getName() + ' '));
+    }
+}
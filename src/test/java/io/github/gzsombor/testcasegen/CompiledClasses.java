@@ -0,0 +1,101 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import junit.framework.Assert;
+
+/**
+ * Compiles a generated class into a temporary directory, with the test classpath, and loads it. Closing it deletes the
+ * directory.
+ */
+public final class CompiledClasses implements AutoCloseable {
+
+    private final Path directory;
+    private final URLClassLoader loader;
+    private final String messages;
+
+    private CompiledClasses(Path directory, String messages) throws IOException {
+        this.directory = directory;
+        this.messages = messages;
+        this.loader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, CompiledClasses.class.getClassLoader());
+    }
+
+    /**
+     * @return false if the tests run on a JRE without a compiler, the compiling tests are skipped then.
+     */
+    public static boolean isCompilerAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    public static CompiledClasses compile(String className, CharSequence source) throws IOException {
+        return compile(className, source, Collections.emptyMap());
+    }
+
+    /**
+     * Compiles the source with the unchecked warnings enabled, and fails the test if it doesn't compile. The resources
+     * are written next to the class files.
+     */
+    public static CompiledClasses compile(String className, CharSequence source, Map<String, String> resources) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final Path directory = Files.createTempDirectory("testcasegen");
+        try {
+            final Path file = directory.resolve(className + ".java");
+            Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, String> resource : resources.entrySet()) {
+                Files.write(directory.resolve(resource.getKey()), resource.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+            final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+            final int status = compiler.run(null, messages, messages, "-encoding", "UTF-8", "-Xlint:unchecked", "-cp",
+                    System.getProperty("java.class.path"), "-d", directory.toString(), file.toString());
+            final String text = new String(messages.toByteArray(), StandardCharsets.UTF_8);
+            Assert.assertEquals(text, 0, status);
+            return new CompiledClasses(directory, text);
+        } catch (IOException | RuntimeException | Error e) {
+            delete(directory);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the warnings printed by the compiler.
+     */
+    public String getMessages() {
+        return messages;
+    }
+
+    public Class<?> loadClass(String name) throws ClassNotFoundException {
+        return loader.loadClass(name);
+    }
+
+    public Object newInstance(String name) throws ReflectiveOperationException {
+        return loadClass(name).getConstructor().newInstance();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            loader.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
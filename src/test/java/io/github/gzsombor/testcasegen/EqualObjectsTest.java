@@ -0,0 +1,75 @@
+package io.github.gzsombor.testcasegen;
+
+import java.util.Objects;
+
+import junit.framework.TestCase;
+
+public class EqualObjectsTest extends TestCase {
+
+    public static class Point {
+        private int x;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Point && ((Point) obj).x == x;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(x);
+        }
+    }
+
+    public static class Line {
+        private Point start;
+        private Point end;
+
+        public Point getStart() {
+            return start;
+        }
+
+        public void setStart(Point start) {
+            this.start = start;
+        }
+
+        public Point getEnd() {
+            return end;
+        }
+
+        public void setEnd(Point end) {
+            this.end = end;
+        }
+    }
+
+    private static String capture(boolean deduplicateEqualObjects) {
+        final Line line = new Line();
+        line.setStart(new Point());
+        line.setEnd(new Point());
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setDeduplicateEqualObjects(deduplicateEqualObjects);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(line);
+        return TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+    }
+
+    public void testEqualObjectsHaveSeparateGettersByDefault() {
+        final String code = capture(false);
+        assertTrue(code, code.contains("this.line0.setEnd(getPoint1());"));
+        assertTrue(code, code.contains("this.line0.setStart(getPoint0());"));
+    }
+
+    public void testEqualObjectsShareAGetterWhenDeduplicated() {
+        final String code = capture(true);
+        assertTrue(code, code.contains("this.line0.setEnd(getPoint0());"));
+        assertTrue(code, code.contains("this.line0.setStart(getPoint0());"));
+        assertFalse(code, code.contains("getPoint1()"));
+    }
+}
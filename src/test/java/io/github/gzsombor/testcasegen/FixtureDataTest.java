@@ -0,0 +1,185 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class FixtureDataTest extends TestCase {
+
+    public enum Kind {
+        LEAF, BRANCH
+    }
+
+    public static class Node {
+        private String name;
+        private double weight;
+        private Kind kind;
+        private BigDecimal price;
+        private int[] data;
+        private Node parent;
+        private List<String> tags = new ArrayList<>();
+        private Map<String, Object> labels = new LinkedHashMap<>();
+        private final List<Node> children = new ArrayList<>();
+        private Properties properties;
+        private TreeMap<String, Integer> ranking;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public void setWeight(double weight) {
+            this.weight = weight;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public void setKind(Kind kind) {
+            this.kind = kind;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+
+        public int[] getData() {
+            return data;
+        }
+
+        public void setData(int[] data) {
+            this.data = data;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        public void setParent(Node parent) {
+            this.parent = parent;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public Map<String, Object> getLabels() {
+            return labels;
+        }
+
+        public void setLabels(Map<String, Object> labels) {
+            this.labels = labels;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        public Properties getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Properties properties) {
+            this.properties = properties;
+        }
+
+        public TreeMap<String, Integer> getRanking() {
+            return ranking;
+        }
+
+        public void setRanking(TreeMap<String, Integer> ranking) {
+            this.ranking = ranking;
+        }
+    }
+
+    private static Node tree() {
+        final Node root = new Node();
+        root.setName("root \"quoted\"\né 😀");
+        root.setKind(Kind.BRANCH);
+        root.setPrice(new BigDecimal("12.50"));
+        root.getTags().addAll(Arrays.asList("a, b]", "c"));
+        root.setProperties(new Properties());
+        root.getProperties().setProperty("user", "admin");
+        root.setRanking(new TreeMap<>(Comparator.reverseOrder()));
+        root.getRanking().put("first", 1);
+        for (int i = 0; i < 3; i++) {
+            final Node child = new Node();
+            child.setName("child" + i);
+            child.setWeight(i + 0.5);
+            child.setKind(Kind.LEAF);
+            child.setData(new int[] { i, -i, Integer.MAX_VALUE });
+            child.setParent(root);
+            child.getLabels().put("index", i);
+            child.getLabels().put("sibling", i > 0 ? root.getChildren().get(i - 1) : null);
+            root.getChildren().add(child);
+        }
+        return root;
+    }
+
+    public void testExternalizedFixtureLoadsTheSameGraph() throws Exception {
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        final CaptureStatistics statistics = new CaptureStatistics();
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setCaptureListener(statistics);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(tree());
+        final StringWriter source = new StringWriter();
+        final StringWriter data = new StringWriter();
+        new TestcaseSourceFormatter(generator, new PrintWriter(source, true)).writeExternalized("Fixture", "Fixture.data", data);
+        assertFalse(source.toString().contains("child"));
+        assertTrue(data.toString(), data.toString().contains("# Ranking skipped, java.util.TreeMap is not written as data"));
+        assertEquals(source.toString().length() + data.toString().length(), statistics.getEmittedCharacters());
+
+        try (CompiledClasses classes = CompiledClasses.compile("Fixture", "import io.github.gzsombor.testcasegen.FixtureDataTest.*;\n\n" + source,
+                Collections.singletonMap("Fixture.data", data.toString()))) {
+            final Node root = (Node) classes.loadClass("Fixture").getMethod("getNode0").invoke(classes.newInstance("Fixture"));
+            final Node expected = tree();
+            assertEquals(expected.getName(), root.getName());
+            assertEquals(Kind.BRANCH, root.getKind());
+            assertEquals(expected.getPrice(), root.getPrice());
+            assertEquals(expected.getTags(), root.getTags());
+            assertEquals(expected.getProperties(), root.getProperties());
+            assertNull(root.getRanking());
+            assertEquals(3, root.getChildren().size());
+            for (int i = 0; i < 3; i++) {
+                final Node child = root.getChildren().get(i);
+                assertEquals("child" + i, child.getName());
+                assertEquals(i + 0.5, child.getWeight());
+                assertTrue(Arrays.equals(expected.getChildren().get(i).getData(), child.getData()));
+                assertSame(root, child.getParent());
+                assertEquals(i, child.getLabels().get("index"));
+                assertSame(i > 0 ? root.getChildren().get(i - 1) : null, child.getLabels().get("sibling"));
+                assertTrue(child.getLabels().containsKey("sibling"));
+            }
+        }
+    }
+}
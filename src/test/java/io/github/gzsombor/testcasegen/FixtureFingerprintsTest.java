@@ -0,0 +1,87 @@
+package io.github.gzsombor.testcasegen;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.github.gzsombor.testcasegen.StructuralDeduplicationTest.Person;
+import junit.framework.TestCase;
+
+public class FixtureFingerprintsTest extends TestCase {
+
+    private static TestcaseGenerator capture(String... friends) {
+        return capture(true, friends);
+    }
+
+    private static TestcaseGenerator capture(boolean identityProperty, String... friends) {
+        final Person root = new Person();
+        root.setName("root");
+        for (String name : friends) {
+            final Person friend = new Person();
+            friend.setName(name);
+            root.getFriends().add(friend);
+        }
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        if (identityProperty) {
+            config.addIdentityProperties("Name");
+        }
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(root);
+        return generator;
+    }
+
+    private static String getterOf(String code, String name) {
+        final Matcher matcher = Pattern.compile("this\\.(person\\d+)\\.setName\\(\"" + name + "\"\\);").matcher(code);
+        assertTrue(code, matcher.find());
+        return matcher.group(1);
+    }
+
+    public void testKeepsTheNamesOfTheUnchangedObjects() throws Exception {
+        final TestcaseGenerator first = capture("a", "b", "c");
+        final String before = TestcaseSourceFormatter.dumpCode(first, "Fixture");
+        final FixtureFingerprints fingerprints = FixtureFingerprints.of(first);
+
+        final TestcaseGenerator second = capture("x", "a", "b");
+        final FixtureFingerprints.Changes changes = fingerprints.keepNames(second);
+        final String after = TestcaseSourceFormatter.dumpCode(second, "Fixture");
+
+        assertEquals(getterOf(before, "a"), getterOf(after, "a"));
+        assertEquals(getterOf(before, "b"), getterOf(after, "b"));
+        assertEquals(getterOf(before, "root"), getterOf(after, "root"));
+        assertEquals("person4", getterOf(after, "x"));
+        assertEquals(1, changes.getAdded());
+        assertEquals(1, changes.getChanged());
+        assertEquals(2, changes.getUnchanged());
+        assertEquals(1, changes.getRemoved());
+    }
+
+    public void testMovedObjectsKeepTheirNamesWithoutIdentityProperties() {
+        final TestcaseGenerator first = capture(false, "a", "b", "c", "d");
+        final String before = TestcaseSourceFormatter.dumpCode(first, "Fixture");
+        final FixtureFingerprints fingerprints = FixtureFingerprints.of(first);
+
+        // every friend moves to a new path in the list
+        final TestcaseGenerator second = capture(false, "x", "a", "b", "c", "d");
+        final FixtureFingerprints.Changes changes = fingerprints.keepNames(second);
+        final String after = TestcaseSourceFormatter.dumpCode(second, "Fixture");
+
+        for (String name : new String[] { "root", "a", "b", "c", "d" }) {
+            assertEquals(name, getterOf(before, name), getterOf(after, name));
+        }
+        assertEquals("person5", getterOf(after, "x"));
+        assertEquals("1 added, 1 changed, 4 unchanged, 0 removed", changes.toString());
+    }
+
+    public void testRoundTrip() throws Exception {
+        final Path file = Files.createTempFile("fixture", ".fingerprints");
+        try {
+            FixtureFingerprints.of(capture("a", "b")).write(file);
+            final FixtureFingerprints.Changes changes = FixtureFingerprints.read(file).keepNames(capture("a", "b"));
+            assertEquals(0, changes.getAdded() + changes.getChanged() + changes.getRemoved());
+            assertEquals(3, changes.getUnchanged());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
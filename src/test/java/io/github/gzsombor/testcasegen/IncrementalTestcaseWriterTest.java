@@ -0,0 +1,152 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+public class IncrementalTestcaseWriterTest extends TestCase {
+
+    private static final String IMPORTS = "import java.util.*;\nimport io.github.gzsombor.testcasegen.IncrementalTestcaseWriterTest.*;\n\n";
+
+    public static class Person {
+        private String name;
+        private Person partner;
+        private List<Person> friends = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Person getPartner() {
+            return partner;
+        }
+
+        public void setPartner(Person partner) {
+            this.partner = partner;
+        }
+
+        public List<Person> getFriends() {
+            return friends;
+        }
+
+        public void setFriends(List<Person> friends) {
+            this.friends = friends;
+        }
+    }
+
+    private static Person person(String name, Person... friends) {
+        final Person person = new Person();
+        person.setName(name);
+        person.getFriends().addAll(Arrays.asList(friends));
+        return person;
+    }
+
+    private static Person graph() {
+        final Person alice = person("alice");
+        final Person bob = person("bob", alice);
+        alice.setPartner(bob);
+        final Person carol = person("carol", alice, bob);
+        return person("root", bob, carol, person("dave", carol));
+    }
+
+    private static List<String> sortedLines(String source) {
+        return Arrays.stream(source.split("\n")).map(String::trim).filter(line -> !line.isEmpty()).sorted()
+                .collect(Collectors.toList());
+    }
+
+    public void testWritesTheSameGettersAsTheFormatter() throws Exception {
+        final Person root = graph();
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(root);
+        final String expected = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+
+        final StringWriter out = new StringWriter();
+        final List<String> accesses;
+        try (IncrementalTestcaseWriter writer = new IncrementalTestcaseWriter(config, out, "Fixture")) {
+            accesses = writer.introspect(root);
+        }
+        assertEquals(sortedLines(expected), sortedLines(out.toString()));
+        assertEquals(1, accesses.size());
+
+        if (CompiledClasses.isCompilerAvailable()) {
+            try (CompiledClasses classes = CompiledClasses.compile("Fixture", IMPORTS + out)) {
+                final Object fixture = classes.newInstance("Fixture");
+                final String getter = accesses.get(0).replace("()", "");
+                final Person copy = (Person) fixture.getClass().getMethod(getter).invoke(fixture);
+                assertEquals("root", copy.getName());
+                assertEquals("carol", copy.getFriends().get(1).getName());
+                final Person alice = copy.getFriends().get(1).getFriends().get(0);
+                assertSame(alice, copy.getFriends().get(0).getFriends().get(0));
+                assertSame(copy.getFriends().get(0), alice.getPartner());
+            }
+        }
+    }
+
+    public void testPublishesARootWrittenByAnEarlierCall() throws Exception {
+        final Person root = graph();
+        final Person bob = root.getFriends().get(0);
+        final StringWriter out = new StringWriter();
+        final List<String> accesses;
+        try (IncrementalTestcaseWriter writer = new IncrementalTestcaseWriter(new TestcaseGeneratorConfig(), out, "Fixture")) {
+            writer.introspect(root);
+            accesses = writer.introspect(bob);
+            assertEquals(accesses, writer.introspect(bob));
+        }
+        final String getter = accesses.get(0);
+        assertTrue(getter, getter.endsWith("Root()"));
+        assertEquals(out.toString(), 1, out.toString().split("public Person " + getter.replace("()", "\\(\\)")).length - 1);
+
+        if (CompiledClasses.isCompilerAvailable()) {
+            try (CompiledClasses classes = CompiledClasses.compile("Fixture", IMPORTS + out)) {
+                final Object fixture = classes.newInstance("Fixture");
+                final Person copy = (Person) fixture.getClass().getMethod(getter.replace("()", "")).invoke(fixture);
+                assertEquals("bob", copy.getName());
+            }
+        }
+    }
+
+    public void testDoesNotKeepTheWrittenObjects() throws Exception {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        try (IncrementalTestcaseWriter writer = new IncrementalTestcaseWriter(config, new StringWriter(), "Fixture")) {
+            Person root = graph();
+            writer.introspect(root);
+            final WeakReference<Person> reference = new WeakReference<>(root);
+            root = null;
+            for (int i = 0; i < 10 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(reference.get());
+        }
+    }
+
+    public void testHonoursTheLimitsAndReportsTheWrittenCharacters() throws Exception {
+        final CaptureStatistics statistics = new CaptureStatistics();
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setMaxNodes(1);
+        config.setCaptureListener(statistics);
+        final Person root = person("root");
+        root.setPartner(person("partner"));
+        final StringWriter out = new StringWriter();
+        try (IncrementalTestcaseWriter writer = new IncrementalTestcaseWriter(config, out, "Fixture")) {
+            writer.introspect(root);
+        }
+        assertTrue(out.toString(), out.toString().contains("the limit of 1 objects is reached"));
+        assertFalse(out.toString(), out.toString().contains("getPerson1"));
+        assertEquals(out.toString().length(), statistics.getEmittedCharacters());
+
+        if (CompiledClasses.isCompilerAvailable()) {
+            CompiledClasses.compile("Fixture", IMPORTS + out).close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.gzsombor.testcasegen;
+
+import junit.framework.TestCase;
+
+public class MethodHandleAccessorFactoryTest extends TestCase {
+
+    public static class Bean {
+        public String getName() {
+            return "name";
+        }
+
+        public int getCount() {
+            return 42;
+        }
+
+        public String getFailure() {
+            throw new IllegalStateException("failed");
+        }
+
+        public String getError() {
+            throw new AssertionError("error");
+        }
+    }
+
+    static class Hidden {
+        public String getName() {
+            return "hidden";
+        }
+
+        public String getFailure() {
+            throw new IllegalStateException("failed");
+        }
+
+        public String getError() {
+            throw new AssertionError("error");
+        }
+    }
+
+    private static final String OTHER = "public class Other {\n"
+            + "    public String getName() { return \"other\"; }\n"
+            + "    public String getFailure() { throw new IllegalStateException(\"failed\"); }\n"
+            + "    public String getError() { throw new AssertionError(\"error\"); }\n"
+            + "}\n";
+
+    private final MethodHandleAccessorFactory factory = new MethodHandleAccessorFactory();
+
+    private PropertyAccessor accessor(Class<?> type, String getter) throws NoSuchMethodException {
+        return factory.createAccessor(type.getMethod(getter));
+    }
+
+    private void assertFailures(Class<?> type, Object bean) throws NoSuchMethodException {
+        try {
+            accessor(type, "getFailure").read(bean);
+            fail("the exception of the getter is not thrown");
+        } catch (ReflectionException e) {
+            Throwable cause = e.getCause();
+            while (!(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertEquals("failed", cause.getMessage());
+        }
+        try {
+            accessor(type, "getError").read(bean);
+            fail("the error of the getter is not thrown");
+        } catch (AssertionError e) {
+            assertEquals("error", e.getMessage());
+        }
+    }
+
+    public void testSpinsAFunctionForAVisibleGetter() throws Exception {
+        final PropertyAccessor name = accessor(Bean.class, "getName");
+        assertTrue(name instanceof MethodHandleAccessorFactory.FunctionAccessor);
+        assertSame(name, accessor(Bean.class, "getName"));
+        assertEquals("name", name.read(new Bean()));
+        assertEquals(42, accessor(Bean.class, "getCount").read(new Bean()));
+        assertFailures(Bean.class, new Bean());
+    }
+
+    public void testCallsAMethodHandleForAClassOfAnOtherClassLoader() throws Exception {
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        try (CompiledClasses classes = CompiledClasses.compile("Other", OTHER)) {
+            final Class<?> type = classes.loadClass("Other");
+            final Object bean = type.getConstructor().newInstance();
+            final PropertyAccessor name = accessor(type, "getName");
+            assertTrue(name instanceof MethodHandleAccessorFactory.HandleAccessor);
+            assertEquals("other", name.read(bean));
+            assertFailures(type, bean);
+        }
+    }
+
+    public void testFallsBackToReflectionForANonPublicClass() throws Exception {
+        final PropertyAccessor name = accessor(Hidden.class, "getName");
+        assertFalse(name instanceof MethodHandleAccessorFactory.FunctionAccessor);
+        assertFalse(name instanceof MethodHandleAccessorFactory.HandleAccessor);
+        assertEquals("hidden", name.read(new Hidden()));
+        assertFailures(Hidden.class, new Hidden());
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.gzsombor.testcasegen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class ParallelCaptureTest extends TestCase {
+
+    public static class Node {
+        private String name;
+        private int weight;
+        private Node parent;
+        private List<Node> children = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        public void setParent(Node parent) {
+            this.parent = parent;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+    }
+
+    static Node tree(Node parent, int depth, int width, int[] sequence) {
+        final Node node = new Node();
+        node.setName("node" + sequence[0]++);
+        node.setWeight(depth * width);
+        node.setParent(parent);
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                node.getChildren().add(tree(node, depth - 1, width, sequence));
+            }
+        }
+        return node;
+    }
+
+    private static String capture(ForkJoinPool pool, Object... roots) {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setCapturePool(pool);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(roots);
+        return TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+    }
+
+    public void testParallelOutputMatchesSequential() {
+        final Node root = tree(null, 4, 4, new int[1]);
+        final Node other = tree(root, 2, 3, new int[] { 1000 });
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final String sequential = capture(null, root, other);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(sequential, capture(pool, root, other));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.gzsombor.testcasegen;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class PropertySchemaTest extends TestCase {
+
+    private static final PropertySchema SCHEMA = PropertySchema.of(
+            Arrays.asList("flag", "letter", "small", "short", "number", "big", "ratio", "amount", "name"),
+            Arrays.asList(boolean.class, char.class, byte.class, short.class, int.class, long.class, float.class, double.class,
+                    String.class));
+
+    private static Object roundTrip(String name, Object value) {
+        final int slot = SCHEMA.getSlot(name);
+        assertTrue(name, SCHEMA.canPack(slot, value));
+        return SCHEMA.unpack(slot, SCHEMA.pack(slot, value));
+    }
+
+    public void testPrimitivesRoundTrip() {
+        assertEquals(8, SCHEMA.getPrimitiveCount());
+        assertEquals(Boolean.TRUE, roundTrip("flag", true));
+        assertEquals(Boolean.FALSE, roundTrip("flag", false));
+        assertEquals('\uffff', roundTrip("letter", '\uffff'));
+        assertEquals((byte) -128, roundTrip("small", (byte) -128));
+        assertEquals(Short.MIN_VALUE, roundTrip("short", Short.MIN_VALUE));
+        assertEquals(-1, roundTrip("number", -1));
+        assertEquals(Long.MIN_VALUE, roundTrip("big", Long.MIN_VALUE));
+    }
+
+    public void testFloatingPointBitsAreKept() {
+        final float nan = Float.intBitsToFloat(0x7fc00123);
+        assertEquals(0x7fc00123, Float.floatToRawIntBits((Float) roundTrip("ratio", nan)));
+        assertEquals(Float.floatToRawIntBits(-0.0f), Float.floatToRawIntBits((Float) roundTrip("ratio", -0.0f)));
+        assertEquals(Float.MIN_VALUE, roundTrip("ratio", Float.MIN_VALUE));
+        final double doubleNan = Double.longBitsToDouble(0x7ff8000000000abcL);
+        assertEquals(0x7ff8000000000abcL, Double.doubleToRawLongBits((Double) roundTrip("amount", doubleNan)));
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits((Double) roundTrip("amount", -0.0)));
+        assertEquals(Double.NEGATIVE_INFINITY, roundTrip("amount", Double.NEGATIVE_INFINITY));
+    }
+
+    public void testOnlyTheBoxedTypeOfTheSlotIsPacked() {
+        assertFalse(SCHEMA.canPack(SCHEMA.getSlot("number"), 1L));
+        assertFalse(SCHEMA.canPack(SCHEMA.getSlot("number"), null));
+        assertFalse(SCHEMA.canPack(SCHEMA.getSlot("ratio"), 1.0));
+        assertFalse(SCHEMA.canPack(SCHEMA.getSlot("name"), "text"));
+        assertEquals(-1, SCHEMA.getPrimitiveIndex(SCHEMA.getSlot("name")));
+    }
+
+    public void testUnexpectedPrimitiveValueIsRejected() {
+        final IntrospectionResult result = new IntrospectionResult(PropertySchemaTest.class, 0, SCHEMA);
+        result.setAttribute("number", 42);
+        try {
+            result.setAttribute("number", "42");
+            fail("a string is stored in an int slot");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unexpected value for the primitive PropertySchemaTest.number: 42", e.getMessage());
+        }
+        try {
+            result.setAttribute("flag", null);
+            fail("null is stored in a boolean slot");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(".flag: null"));
+        }
+    }
+
+    public void testExtensionsAreShared() {
+        final PropertySchema extended = PropertySchema.EMPTY.with("schemaTestFirst").with("schemaTestSecond");
+        assertSame(extended, PropertySchema.EMPTY.with("schemaTestFirst").with("schemaTestSecond"));
+        assertEquals(2, extended.size());
+        assertEquals(0, extended.getPrimitiveCount());
+        assertEquals(-1, extended.getSlot("missing"));
+    }
+
+    public void testSlotsAreSortedByName() {
+        final PropertySchema schema = PropertySchema.of(Arrays.asList("zone", "amount", "name", "count"),
+                Arrays.asList(String.class, long.class, String.class, int.class));
+        assertEquals(Arrays.asList("amount", "count", "name", "zone"),
+                Arrays.asList(schema.getName(0), schema.getName(1), schema.getName(2), schema.getName(3)));
+        assertEquals(0, schema.getPrimitiveIndex(0));
+        assertEquals(1, schema.getPrimitiveIndex(1));
+        assertEquals("zone", PropertySchema.EMPTY.with("zone").with("amount").getName(1));
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.gzsombor.testcasegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class SnapshotTest extends TestCase {
+
+    public enum Status {
+        NEW, DONE
+    }
+
+    public static class Secret {
+        @Override
+        public String toString() {
+            return "secret";
+        }
+    }
+
+    public static class Item {
+        private String name;
+        private boolean active;
+        private long count;
+        private Status status;
+        private BigDecimal price;
+        private LocalDate date;
+        private Item parent;
+        private Secret secret;
+        private Set<String> tags = new LinkedHashSet<>();
+        private List<Item> children = new ArrayList<>();
+        private Map<String, Object> labels = new LinkedHashMap<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public void setDate(LocalDate date) {
+            this.date = date;
+        }
+
+        public Item getParent() {
+            return parent;
+        }
+
+        public void setParent(Item parent) {
+            this.parent = parent;
+        }
+
+        public Secret getSecret() {
+            return secret;
+        }
+
+        public void setSecret(Secret secret) {
+            this.secret = secret;
+        }
+
+        public Set<String> getTags() {
+            return tags;
+        }
+
+        public List<Item> getChildren() {
+            return children;
+        }
+
+        public Map<String, Object> getLabels() {
+            return labels;
+        }
+
+        public void setLabels(Map<String, Object> labels) {
+            this.labels = labels;
+        }
+    }
+
+    private static Item item(Item parent, int depth, int index) {
+        final Item item = new Item();
+        item.setName("item é " + depth + '/' + index);
+        item.setActive(index % 2 == 0);
+        item.setCount(depth * 100 + index);
+        item.setStatus(Status.values()[index % 2]);
+        item.setPrice(new BigDecimal(index + ".25"));
+        item.setDate(LocalDate.of(2020, 1 + index % 12, 1));
+        item.setParent(parent);
+        item.setSecret(new Secret());
+        item.getLabels().put("index", index);
+        item.getLabels().put("parent", parent);
+        item.getLabels().put("secret", item.getSecret());
+        for (int i = 0; i < index % 4; i++) {
+            item.getTags().add("tag" + i);
+        }
+        if (depth > 0) {
+            for (int i = 0; i < 6; i++) {
+                item.getChildren().add(item(item, depth - 1, i));
+            }
+        }
+        return item;
+    }
+
+    private static TestcaseGeneratorConfig config() {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.addSkipClass(Secret.class);
+        config.setMaxDepth(2);
+        config.setMaxCollectionSize(4, CollectionSampling.HEAD);
+        return config;
+    }
+
+    public void testSnapshotGeneratesTheSameCode() throws IOException {
+        final TestcaseGenerator generator = config().startIntrospect();
+        generator.introspect(item(null, 3, 0));
+        final String expected = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+
+        final Path file = Files.createTempFile("testcasegen", ".snapshot");
+        try {
+            new SnapshotWriter(generator).write(file);
+            final TestcaseGenerator restored = new SnapshotReader(config()).read(file);
+            assertEquals(expected, TestcaseSourceFormatter.dumpCode(restored, "Fixture"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testRejectsOtherFiles() throws IOException {
+        final Path file = Files.createTempFile("testcasegen", ".snapshot");
+        try {
+            Files.write(file, "public class Fixture {}".getBytes("UTF-8"));
+            new SnapshotReader(config()).read(file);
+            fail("the file is not a snapshot");
+        } catch (IOException e) {
+            assertEquals("Not a testcasegen snapshot", e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] write(SnapshotWriter writer) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(bytes)) {
+            writer.write(channel);
+        }
+        return bytes.toByteArray();
+    }
+
+    public void testSnapshotsAreRepeatable() throws IOException {
+        final TestcaseGenerator generator = config().startIntrospect();
+        generator.introspect(item(null, 2, 0));
+        final SnapshotWriter writer = new SnapshotWriter(generator);
+        final byte[] first = write(writer);
+        final byte[] second = write(writer);
+        assertTrue(Arrays.equals(first, second));
+        final String expected = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+        assertEquals(expected, TestcaseSourceFormatter.dumpCode(new SnapshotReader(config()).read(ByteBuffer.wrap(second)), "Fixture"));
+
+        final TestcaseGenerator other = config().startIntrospect();
+        other.introspect(item(null, 2, 0));
+        assertTrue(Arrays.equals(first, write(new SnapshotWriter(other))));
+    }
+
+    public void testRejectsTruncatedStrings() {
+        final ByteBuffer snapshot = ByteBuffer.allocate(16);
+        snapshot.putInt(SnapshotWriter.MAGIC).putShort(SnapshotWriter.VERSION);
+        // one node, a new type, a new string of 100 bytes
+        snapshot.put((byte) 1).put((byte) 0).put((byte) 0).put((byte) 100).put("abc".getBytes());
+        snapshot.flip();
+        try {
+            new SnapshotReader(config()).read(snapshot);
+            fail("the string is longer than the snapshot");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("String of 100 bytes"));
+        }
+    }
+}
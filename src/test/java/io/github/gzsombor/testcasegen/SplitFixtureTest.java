@@ -0,0 +1,100 @@
+package io.github.gzsombor.testcasegen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class SplitFixtureTest extends TestCase {
+
+    public static class Order {
+        private String name;
+        private List<Line> lines = new ArrayList<>();
+        private Set<String> tags = new HashSet<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<Line> getLines() {
+            return lines;
+        }
+
+        public void setLines(List<Line> lines) {
+            this.lines = lines;
+        }
+
+        public Set<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(Set<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    public static class Line {
+        private Order order;
+        private int quantity;
+
+        public Order getOrder() {
+            return order;
+        }
+
+        public void setOrder(Order order) {
+            this.order = order;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    public void testSplitFixtureCompiles() throws Exception {
+        final Order order = new Order();
+        order.setName("split");
+        for (int i = 0; i < 300; i++) {
+            final Line line = new Line();
+            line.setOrder(order);
+            line.setQuantity(i);
+            order.getLines().add(line);
+            order.getTags().add("tag" + i);
+        }
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setMaxMethodSize(1000);
+        config.setMaxClassSize(5000);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(order);
+        final String code = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+        assertTrue(code.contains("final class FixturePart1 {"));
+        assertTrue(code.contains(TestcaseSourceFormatter.PART_FIELD + "1."));
+        assertTrue(code.contains("private <T extends Collection<?>> T "));
+
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        try (CompiledClasses classes = CompiledClasses.compile("Fixture",
+                "import java.util.*;\nimport io.github.gzsombor.testcasegen.SplitFixtureTest.*;\n\n" + code)) {
+            assertFalse(classes.getMessages(), classes.getMessages().contains("warning"));
+            final Object fixture = classes.newInstance("Fixture");
+            final Order copy = (Order) fixture.getClass().getMethod("getOrder0").invoke(fixture);
+            assertEquals("split", copy.getName());
+            assertEquals(300, copy.getLines().size());
+            assertEquals(300, copy.getTags().size());
+            for (int i = 0; i < 300; i++) {
+                assertEquals(i, copy.getLines().get(i).getQuantity());
+                assertSame(copy, copy.getLines().get(i).getOrder());
+            }
+        }
+    }
+}
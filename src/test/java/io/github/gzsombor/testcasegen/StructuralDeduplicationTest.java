@@ -0,0 +1,144 @@
+package io.github.gzsombor.testcasegen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class StructuralDeduplicationTest extends TestCase {
+
+    public static class Person {
+        private String name;
+        private Person partner;
+        private List<Person> friends = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Person getPartner() {
+            return partner;
+        }
+
+        public void setPartner(Person partner) {
+            this.partner = partner;
+        }
+
+        public List<Person> getFriends() {
+            return friends;
+        }
+
+        public void setFriends(List<Person> friends) {
+            this.friends = friends;
+        }
+    }
+
+    public static class Team {
+        private Set<Person> members = new HashSet<>();
+
+        public Set<Person> getMembers() {
+            return members;
+        }
+
+        public void setMembers(Set<Person> members) {
+            this.members = members;
+        }
+    }
+
+    private static Person couple(String name) {
+        final Person first = new Person();
+        final Person second = new Person();
+        first.setName(name);
+        second.setName(name);
+        first.setPartner(second);
+        second.setPartner(first);
+        return first;
+    }
+
+    private static Person person(String name) {
+        final Person person = new Person();
+        person.setName(name);
+        return person;
+    }
+
+    private static Object compileAndGet(String code, String getter) throws Exception {
+        try (CompiledClasses classes = CompiledClasses.compile("Fixture",
+                "import java.util.*;\nimport io.github.gzsombor.testcasegen.StructuralDeduplicationTest.*;\n\n" + code)) {
+            final Object fixture = classes.newInstance("Fixture");
+            return fixture.getClass().getMethod(getter).invoke(fixture);
+        }
+    }
+
+    private static String capture(boolean deduplicate, Object root) {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setDeduplicateStructures(deduplicate);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(root);
+        return TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+    }
+
+    public void testMergesEqualCycles() {
+        final Person root = new Person();
+        root.setName("root");
+        for (int i = 0; i < 3; i++) {
+            root.getFriends().add(couple("a"));
+        }
+        root.getFriends().add(couple("b"));
+
+        // the partners are the same as each other too, so only the root, an 'a' and a 'b' person remain
+        final String code = capture(true, root);
+        assertTrue(code, code.contains("new ArrayList<>(Arrays.asList(getPerson2(), getPerson2(), getPerson2(), getPerson1()))"));
+        assertTrue(code, code.contains("this.person2.setPartner(getPerson2());"));
+        assertFalse(code, code.contains("getPerson3()"));
+        assertTrue(capture(false, root).contains("getPerson8()"));
+    }
+
+    public void testKeepsTheRoots() {
+        final Person first = couple("a");
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.setDeduplicateStructures(true);
+        final TestcaseGenerator generator = config.startIntrospect();
+        generator.introspect(first, first.getPartner());
+        final String code = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+        assertTrue(code, code.contains("public Person getPerson0()"));
+        assertTrue(code, code.contains("public Person getPerson1()"));
+    }
+
+    public void testKeepsTheElementsOfASet() throws Exception {
+        final Team team = new Team();
+        team.getMembers().add(person("same"));
+        team.getMembers().add(person("same"));
+        final Person leader = person("leader");
+        leader.setPartner(person("same"));
+        team.getMembers().add(leader);
+
+        final String code = capture(true, team);
+        assertTrue(code, code.contains("getPerson2()"));
+        assertFalse(code, code.contains("getPerson3()"));
+        if (CompiledClasses.isCompilerAvailable()) {
+            assertEquals(3, ((Team) compileAndGet(code, "getTeam0")).getMembers().size());
+        }
+    }
+
+    public void testMergedObjectsAreShared() throws Exception {
+        final Person root = person("root");
+        root.getFriends().add(person("same"));
+        root.getFriends().add(person("same"));
+
+        final String code = capture(true, root);
+        assertTrue(code, code.contains("Arrays.asList(getPerson1(), getPerson1())"));
+        if (CompiledClasses.isCompilerAvailable()) {
+            final Person copy = (Person) compileAndGet(code, "getPerson0");
+            assertSame(copy.getFriends().get(0), copy.getFriends().get(1));
+            // the documented trade-off: a change through one reference is seen through the other
+            copy.getFriends().get(0).setName("changed");
+            assertEquals("changed", copy.getFriends().get(1).getName());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.gzsombor.testcasegen;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import io.github.gzsombor.testcasegen.ParallelCaptureTest.Node;
+import junit.framework.TestCase;
+
+public class TestcaseGeneratorConfigTest extends TestCase {
+
+    public static class ItemAccessors implements GeneratedAccessors {
+        @Override
+        public Class<?> getType() {
+            return TestcaseGeneratorConfigTest.class;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return new String[0];
+        }
+
+        @Override
+        public PropertyAccessor getAccessor(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    public static class BrokenAccessors extends ItemAccessors {
+        public BrokenAccessors() {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    public void testBrokenProvidersAreSkipped() throws Exception {
+        final Path directory = Files.createTempDirectory("testcasegen");
+        final Logger log = Logger.getLogger(TestcaseGeneratorConfig.class.getName());
+        final Level level = log.getLevel();
+        try {
+            final Path services = Files.createDirectories(directory.resolve("META-INF/services"));
+            Files.write(services.resolve(GeneratedAccessors.class.getName()), Arrays.asList("com.example.Missing",
+                    BrokenAccessors.class.getName(), ItemAccessors.class.getName()), StandardCharsets.UTF_8);
+            log.setLevel(Level.OFF);
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, getClass().getClassLoader())) {
+                final Map<Class<?>, GeneratedAccessors> accessors = TestcaseGeneratorConfig.loadGeneratedAccessors(loader);
+                assertEquals(1, accessors.size());
+                assertTrue(accessors.get(TestcaseGeneratorConfigTest.class) instanceof ItemAccessors);
+            }
+        } finally {
+            log.setLevel(level);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    public void testRegisteredAccessorsBelongToTheConfiguration() {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.addGeneratedAccessors(new ItemAccessors());
+        assertNotNull(config.getGeneratedAccessors(TestcaseGeneratorConfigTest.class));
+        assertNull(new TestcaseGeneratorConfig().getGeneratedAccessors(TestcaseGeneratorConfigTest.class));
+    }
+
+    public void testFindsTheAccessorsOfTheContextClassLoader() throws Exception {
+        final Path directory = Files.createTempDirectory("testcasegen");
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextLoader = thread.getContextClassLoader();
+        try {
+            final Path services = Files.createDirectories(directory.resolve("META-INF/services"));
+            Files.write(services.resolve(GeneratedAccessors.class.getName()), Arrays.asList(ItemAccessors.class.getName()),
+                    StandardCharsets.UTF_8);
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, getClass().getClassLoader())) {
+                thread.setContextClassLoader(loader);
+                final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+                assertTrue(config.getGeneratedAccessors(TestcaseGeneratorConfigTest.class) instanceof ItemAccessors);
+                assertNotNull(config.freeze().getGeneratedAccessors(TestcaseGeneratorConfigTest.class));
+                assertSame(config.discoveredAccessors, new TestcaseGeneratorConfig().discoveredAccessors);
+                config.setUseGeneratedAccessors(false);
+                assertNull(config.getGeneratedAccessors(TestcaseGeneratorConfigTest.class));
+            }
+        } finally {
+            thread.setContextClassLoader(contextLoader);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        assertNull(new TestcaseGeneratorConfig().getGeneratedAccessors(TestcaseGeneratorConfigTest.class));
+    }
+
+    public void testFrozenConfigIsSharedBySessions() throws Exception {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        config.addDefaultIntrospector(Node.class).addSkipAttributes("Weight");
+        final TestcaseGeneratorConfig frozen = config.freeze();
+        try {
+            frozen.setMaxDepth(1);
+            fail("a frozen configuration can't be modified");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        config.setMaxDepth(1);
+        assertEquals(Integer.MAX_VALUE, frozen.getMaxDepth());
+        final Node root = ParallelCaptureTest.tree(null, 3, 3, new int[1]);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    final TestcaseGenerator generator = frozen.startIntrospect();
+                    generator.introspect(root);
+                    return TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+                }));
+            }
+            // every session numbers its objects from zero, even though the plan is shared
+            final String expected = results.get(0).get();
+            assertTrue(expected, expected.contains("getNode0()"));
+            assertFalse(expected, expected.contains("setWeight"));
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testFrozenConfigSharesTheResolvedPlans() {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        assertNotSame(config.startIntrospect().getPlan(Node.class), config.startIntrospect().getPlan(Node.class));
+        final TestcaseGeneratorConfig frozen = config.freeze();
+        final Introspector plan = frozen.startIntrospect().getPlan(Node.class);
+        assertNotNull(plan);
+        assertSame(plan, frozen.startIntrospect().getPlan(Node.class));
+        assertNull(frozen.startIntrospect().getPlan(Thread.class));
+    }
+
+    public void testGeneratorKeepsTheSettingsOfItsStart() {
+        final TestcaseGeneratorConfig config = new TestcaseGeneratorConfig();
+        final TestcaseGenerator generator = config.startIntrospect();
+        config.setMaxDepth(0);
+        generator.introspect(ParallelCaptureTest.tree(null, 1, 2, new int[1]));
+        final String code = TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+        assertTrue(code, code.contains("getNode2()"));
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.gzsombor.testcasegen.src;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.gzsombor.testcasegen.CompiledClasses;
+import junit.framework.TestCase;
+
+public class JavaLiteralEscaperTest extends TestCase {
+
+    private static String literal(String value, int maxConstantBytes) throws IOException {
+        final StringBuilder out = new StringBuilder();
+        JavaLiteralEscaper.writeString(value, out, maxConstantBytes);
+        return out.toString();
+    }
+
+    public void testEscapes() throws IOException {
+        assertEquals("\"say \\\"hi\\\" \\\\ bye\"", literal("say \"hi\" \\ bye", JavaLiteralEscaper.MAX_CONSTANT_BYTES));
+        assertEquals("\"a\\nb\\r\\tc\\0002\\177\"", literal("a\nb\r\tc\u00002\u007f", JavaLiteralEscaper.MAX_CONSTANT_BYTES));
+        assertEquals("\"\u00e9\ud83d\ude00\\ud800x\"", literal("\u00e9\ud83d\ude00\ud800x", JavaLiteralEscaper.MAX_CONSTANT_BYTES));
+    }
+
+    public void testSplitsLongStrings() throws IOException {
+        assertEquals("new StringBuilder(6).append(\"abc\").append(\"\\n\u00e9\").append(\"f\").toString()", literal("abc\n\u00e9f", 3));
+        // the surrogate pair is not split
+        assertEquals("new StringBuilder(4).append(\"a\").append(\"\ud83d\ude00\").append(\"b\").toString()", literal("a\ud83d\ude00b", 6));
+    }
+
+    public void testGeneratedLiteralsCompile() throws Exception {
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; large.length() < 200_000; i++) {
+            large.append("{\"id\": ").append(i).append(", \"text\": \"\u00e1rv\u00edzt\u0171r\u0151 \\ t\u00fck\u00f6rf\u00far\u00f3g\u00e9p\"}\n");
+        }
+        final List<String> values = new ArrayList<>();
+        values.add("");
+        values.add("quote \" backslash \\ newline \n tab \t nul \u0000 bell \u0007 del \u007f");
+        values.add("emoji \ud83d\ude00 lone \udc00 \ud800");
+        values.add(large.toString());
+        final StringBuilder source = new StringBuilder("public class Literals {\n    public static String[] values() {\n        return new String[] {\n");
+        for (String value : values) {
+            source.append("            ");
+            JavaLiteralEscaper.writeString(value, source);
+            source.append(",\n");
+        }
+        source.append("        };\n    }\n}\n");
+
+        try (CompiledClasses classes = CompiledClasses.compile("Literals", source)) {
+            final String[] compiled = (String[]) classes.loadClass("Literals").getMethod("values").invoke(null);
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(values.get(i), compiled[i]);
+            }
+        }
+    }
+}
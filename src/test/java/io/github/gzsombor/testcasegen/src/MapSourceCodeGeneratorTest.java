@@ -0,0 +1,175 @@
+package io.github.gzsombor.testcasegen.src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import io.github.gzsombor.testcasegen.CompiledClasses;
+import io.github.gzsombor.testcasegen.TestcaseGenerator;
+import io.github.gzsombor.testcasegen.TestcaseGeneratorConfig;
+import io.github.gzsombor.testcasegen.TestcaseSourceFormatter;
+import junit.framework.TestCase;
+
+public class MapSourceCodeGeneratorTest extends TestCase {
+
+    public static class Settings {
+        private Properties properties;
+        private ConcurrentMap<String, Integer> counts;
+        private TreeMap<String, Integer> reversed;
+        private Map<String, Integer> plain;
+        private Map<String, Integer> unmodifiable;
+        private Map<String, Integer> large;
+
+        public Properties getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Properties properties) {
+            this.properties = properties;
+        }
+
+        public ConcurrentMap<String, Integer> getCounts() {
+            return counts;
+        }
+
+        public void setCounts(ConcurrentMap<String, Integer> counts) {
+            this.counts = counts;
+        }
+
+        public TreeMap<String, Integer> getReversed() {
+            return reversed;
+        }
+
+        public void setReversed(TreeMap<String, Integer> reversed) {
+            this.reversed = reversed;
+        }
+
+        public Map<String, Integer> getPlain() {
+            return plain;
+        }
+
+        public void setPlain(Map<String, Integer> plain) {
+            this.plain = plain;
+        }
+
+        public Map<String, Integer> getUnmodifiable() {
+            return unmodifiable;
+        }
+
+        public void setUnmodifiable(Map<String, Integer> unmodifiable) {
+            this.unmodifiable = unmodifiable;
+        }
+
+        public Map<String, Integer> getLarge() {
+            return large;
+        }
+
+        public void setLarge(Map<String, Integer> large) {
+            this.large = large;
+        }
+    }
+
+    private static MapSourceCodeGenerator map(String mapType, int size) {
+        final List<SourceCodeGenerator> keys = new ArrayList<>();
+        final List<SourceCodeGenerator> values = new ArrayList<>();
+        for (int i = size - 1; i >= 0; i--) {
+            keys.add(new StringSourceCode("key" + i));
+            values.add(i == 1 ? MapSourceCodeGenerator.NULL : new NumberSourceCode(i));
+        }
+        return new MapSourceCodeGenerator(mapType, keys, values);
+    }
+
+    public void testMapTypes() {
+        assertEquals("TreeMap", MapSourceCodeGenerator.getMapType(new TreeMap<>()));
+        assertEquals("LinkedHashMap", MapSourceCodeGenerator.getMapType(new LinkedHashMap<>()));
+        assertEquals("HashMap", MapSourceCodeGenerator.getMapType(new HashMap<>()));
+        assertEquals("Properties", MapSourceCodeGenerator.getMapType(new Properties()));
+        assertEquals("java.util.concurrent.ConcurrentHashMap", MapSourceCodeGenerator.getMapType(new ConcurrentHashMap<>()));
+        assertEquals("HashMap", MapSourceCodeGenerator.getMapType(new HashMap<String, String>() {
+            private static final long serialVersionUID = 1L;
+        }));
+        assertEquals("LinkedHashMap", MapSourceCodeGenerator.getMapType(Collections.singletonMap("a", 1)));
+        assertEquals("TreeMap", MapSourceCodeGenerator.getMapType(Collections.unmodifiableSortedMap(new TreeMap<>())));
+        assertNull(MapSourceCodeGenerator.getMapType(new TreeMap<>(Comparator.reverseOrder())));
+        assertNull(MapSourceCodeGenerator.getMapType(new EnumMap<>(TimeUnit.class)));
+        assertEquals("new TreeMap<>()", map("TreeMap", 0).getObjectAccess());
+    }
+
+    public void testGeneratedMapsCompile() throws Exception {
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        final StringBuilder source = new StringBuilder("import java.util.*;\n\npublic class Maps {\n");
+        source.append("    public List<Map<String, Integer>> values() {\n");
+        source.append("        final List<Map<String, Integer>> values = new ArrayList<>();\n");
+        source.append("        values.add(");
+        map("LinkedHashMap", 3).writeObjectAccess(source);
+        source.append(");\n        final TreeMap<String, Integer> sorted = ");
+        map("TreeMap", 3).writeObjectAccess(source);
+        source.append(";\n        values.add(sorted);\n");
+        source.append("        values.add(large());\n        return values;\n    }\n\n");
+        map("LinkedHashMap", 500).writeFactoryMethod("large", "    ", 1000, source);
+        source.append("}\n");
+
+        try (CompiledClasses classes = CompiledClasses.compile("Maps", source)) {
+            final Object maps = classes.newInstance("Maps");
+            @SuppressWarnings("unchecked")
+            final List<Map<String, Integer>> compiled = (List<Map<String, Integer>>) maps.getClass().getMethod("values").invoke(maps);
+            assertEquals(Arrays.asList("key2", "key1", "key0"), new ArrayList<>(compiled.get(0).keySet()));
+            assertNull(compiled.get(0).get("key1"));
+            assertEquals(Integer.valueOf(2), compiled.get(0).get("key2"));
+            assertEquals(Arrays.asList("key0", "key1", "key2"), new ArrayList<>(compiled.get(1).keySet()));
+            assertEquals(500, compiled.get(2).size());
+            assertEquals("key499", compiled.get(2).keySet().iterator().next());
+        }
+        // the 500 entries don't fit into a single helper method
+        assertTrue(source.indexOf("private void large_5(LinkedHashMap result)") > 0);
+    }
+
+    public void testCapturedMapsCompileWithoutWarnings() throws Exception {
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        final Settings settings = new Settings();
+        settings.setProperties(new Properties());
+        settings.getProperties().setProperty("user", "admin");
+        settings.setCounts(new ConcurrentHashMap<>(Collections.singletonMap("a", 1)));
+        settings.setReversed(new TreeMap<>(Comparator.reverseOrder()));
+        settings.getReversed().put("a", 1);
+        settings.setPlain(new HashMap<>(Collections.singletonMap("b", 2)));
+        settings.setUnmodifiable(Collections.singletonMap("c", 3));
+        settings.setLarge(new LinkedHashMap<>());
+        for (int i = 0; i < 1000; i++) {
+            settings.getLarge().put("key" + i, i);
+        }
+        final TestcaseGenerator generator = new TestcaseGeneratorConfig().startIntrospect();
+        generator.introspect(settings);
+        final String source = "import java.util.*;\nimport io.github.gzsombor.testcasegen.src.MapSourceCodeGeneratorTest.*;\n\n"
+                + TestcaseSourceFormatter.dumpCode(generator, "Fixture");
+        assertTrue(source, source.contains("// skipping setting Reversed, a java.util.TreeMap can't be created"));
+
+        try (CompiledClasses classes = CompiledClasses.compile("Fixture", source)) {
+            assertFalse(classes.getMessages(), classes.getMessages().contains("warning"));
+            final Object fixture = classes.newInstance("Fixture");
+            final Settings compiled = (Settings) fixture.getClass().getMethod("getSettings0").invoke(fixture);
+            assertEquals(settings.getProperties(), compiled.getProperties());
+            assertEquals(ConcurrentHashMap.class, compiled.getCounts().getClass());
+            assertEquals(settings.getCounts(), compiled.getCounts());
+            assertNull(compiled.getReversed());
+            assertEquals(settings.getPlain(), compiled.getPlain());
+            assertEquals(settings.getUnmodifiable(), compiled.getUnmodifiable());
+            assertEquals(new ArrayList<>(settings.getLarge().keySet()), new ArrayList<>(compiled.getLarge().keySet()));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.gzsombor.testcasegen.src;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.github.gzsombor.testcasegen.CompiledClasses;
+import junit.framework.TestCase;
+
+public class PrimitiveArraySourceCodeTest extends TestCase {
+
+    public void testSmallArraysAreInlined() {
+        assertEquals("new int[] { 1, -2, 3 }", new PrimitiveArraySourceCode(new int[] { 1, -2, 3 }).getObjectAccess());
+        assertEquals("new long[] {}", new PrimitiveArraySourceCode(new long[0]).getObjectAccess());
+        assertEquals("new double[] { 0.5d, Double.NaN }", new PrimitiveArraySourceCode(new double[] { 0.5, Double.NaN }).getObjectAccess());
+    }
+
+    public void testLargeByteArrayIsEncoded() {
+        final byte[] bytes = new byte[1 << 20];
+        new Random(42).nextBytes(bytes);
+        final PrimitiveArraySourceCode generator = new PrimitiveArraySourceCode(bytes);
+        assertTrue(generator.getObjectAccess().startsWith("java.util.Base64.getDecoder().decode(new StringBuilder("));
+        assertTrue(generator.estimateAccessSize() < 1000);
+    }
+
+    public void testLargeBooleanArrayIsEncoded() {
+        final boolean[] flags = new boolean[100_000];
+        flags[99_999] = true;
+        final PrimitiveArraySourceCode generator = new PrimitiveArraySourceCode(flags);
+        assertTrue(generator.getObjectAccess().startsWith("((java.util.function.Function<byte[], boolean[]>) bits$ -> {"));
+        assertTrue(generator.estimateAccessSize() < 1000);
+    }
+
+    public void testGeneratedArraysCompile() throws Exception {
+        if (!CompiledClasses.isCompilerAvailable()) {
+            return;
+        }
+        final Random random = new Random(7);
+        final byte[] bytes = new byte[100_000];
+        random.nextBytes(bytes);
+        final int[] ints = random.ints(1000).toArray();
+        final long[] longs = random.longs(100).toArray();
+        final double[] doubles = random.doubles(100).toArray();
+        doubles[3] = Double.NEGATIVE_INFINITY;
+        final float[] floats = new float[50];
+        final short[] shorts = new short[50];
+        final char[] chars = new char[50];
+        final boolean[] flags = new boolean[70_000];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = random.nextBoolean();
+        }
+        for (int i = 0; i < 50; i++) {
+            floats[i] = random.nextFloat();
+            shorts[i] = (short) random.nextInt();
+            chars[i] = (char) random.nextInt();
+        }
+        final List<Object> values = new ArrayList<>();
+        values.add(bytes);
+        values.add(ints);
+        values.add(longs);
+        values.add(doubles);
+        values.add(floats);
+        values.add(shorts);
+        values.add(chars);
+        values.add(flags);
+        values.add(new boolean[] { true, false, true, true, false, false, false, false, true, true, true, true, true, true, true,
+                true, false, false, false, false, false, false, false, false, false, false, false, false, false, false, false,
+                false, false, true });
+        values.add(new boolean[] { true, false });
+        values.add(new byte[] { -128, 0, 127 });
+        values.add(new char[] { 'a', '\n', '\ud800' });
+        values.add(new float[] { Float.POSITIVE_INFINITY, -0.0f });
+
+        final StringBuilder source = new StringBuilder("public class Arrays {\n    public static Object[] values() {\n        return new Object[] {\n");
+        for (Object value : values) {
+            source.append("            ");
+            new PrimitiveArraySourceCode(value).writeObjectAccess(source);
+            source.append(",\n");
+        }
+        source.append("        };\n    }\n}\n");
+
+        try (CompiledClasses classes = CompiledClasses.compile("Arrays", source)) {
+            final Object[] compiled = (Object[]) classes.loadClass("Arrays").getMethod("values").invoke(null);
+            for (int i = 0; i < values.size(); i++) {
+                final Object expected = values.get(i);
+                assertEquals(expected.getClass(), compiled[i].getClass());
+                assertEquals(Array.getLength(expected), Array.getLength(compiled[i]));
+                for (int j = 0; j < Array.getLength(expected); j++) {
+                    assertEquals(Array.get(expected, j), Array.get(compiled[i], j));
+                }
+            }
+        }
+    }
+}
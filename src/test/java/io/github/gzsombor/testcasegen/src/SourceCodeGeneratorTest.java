@@ -0,0 +1,75 @@
+package io.github.gzsombor.testcasegen.src;
+
+import java.io.IOException;
+
+import io.github.gzsombor.testcasegen.TestcaseGenerator;
+import junit.framework.TestCase;
+
+public class SourceCodeGeneratorTest extends TestCase {
+
+    /**
+     * Written against the string methods, before the write methods were added.
+     */
+    static class LegacyGenerator extends SourceCodeGenerator {
+        @Override
+        public boolean isHasInitializer() {
+            return true;
+        }
+
+        @Override
+        public String getObjectAccess() {
+            return "getLegacy0()";
+        }
+
+        @Override
+        public String getInitializer(TestcaseGenerator ctx, String padding) {
+            return padding + "private Legacy getLegacy0() { return new Legacy(); }\n";
+        }
+    }
+
+    static class WritingGenerator extends SourceCodeGenerator {
+        @Override
+        public boolean isHasInitializer() {
+            return true;
+        }
+
+        @Override
+        public void writeObjectAccess(Appendable out) throws IOException {
+            out.append("getWriting0()");
+        }
+
+        @Override
+        public void writeInitializer(TestcaseGenerator ctx, String padding, Appendable out) throws IOException {
+            out.append(padding).append("private Writing getWriting0() { return new Writing(); }\n");
+        }
+    }
+
+    public void testTheWriteMethodsUseTheStringMethods() throws IOException {
+        final StringBuilder out = new StringBuilder();
+        final LegacyGenerator generator = new LegacyGenerator();
+        generator.writeObjectAccess(out);
+        generator.writeInitializer(null, "  ", out);
+        assertEquals("getLegacy0()  private Legacy getLegacy0() { return new Legacy(); }\n", out.toString());
+    }
+
+    public void testTheStringMethodsUseTheWriteMethods() {
+        final WritingGenerator generator = new WritingGenerator();
+        assertEquals("getWriting0()", generator.getObjectAccess());
+        assertEquals("  private Writing getWriting0() { return new Writing(); }\n", generator.getInitializer(null, "  "));
+        // a subclass inherits the overrides
+        assertEquals("getWriting0()", new WritingGenerator() {
+        }.getObjectAccess());
+    }
+
+    public void testAGeneratorWithoutAccessFails() throws IOException {
+        final SourceCodeGenerator generator = new SourceCodeGenerator() {
+        };
+        assertNull(generator.getInitializer(null, ""));
+        try {
+            generator.writeObjectAccess(new StringBuilder());
+            fail("Access written without an override");
+        } catch (AbstractMethodError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("overrides neither"));
+        }
+    }
+}